@@ -0,0 +1,32 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.UUID;
+
+import com.avaloq.dice.app.DiceAppApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Application context for benchmarks of Spring managed services - no web server,
+ * own in-memory H2 database per context and only warnings logged, so logging does not affect measurements
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param properties additional application properties, eg. {@code dice.simulation.parallelism=1}
+     * @return started context, to be closed in benchmark tear down
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(DiceAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID(),
+                            "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.RollDistribution;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.model.ResultAmountProjection;
+import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.service.RollDiceStorageService;
+import com.avaloq.dice.app.service.StatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Relative distribution read from H2 (live statistics disabled) for a single dice/sides pair,
+ * while the amount of simulations of other pairs grows. The pair always has the same simulations stored,
+ * so with indexes in place lookup time should not follow the amount of stored simulations.
+ * {@code pairItems} and {@code pairAmounts} measure the pair lookup alone, as done by Java and database aggregation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DistributionLookupBenchmark {
+
+    private static final int DICE = 3;
+    private static final int SIDES = 6;
+    private static final int PAIR_SIMULATIONS = 100;
+    private static final int OTHER_PAIRS = 100;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int storedSimulations;
+
+    private ConfigurableApplicationContext context;
+    private StatisticsService statisticsService;
+    private RollDiceItemRepository rollDiceItemRepository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("dice.statistics.live=false");
+        statisticsService = context.getBean(StatisticsService.class);
+        rollDiceItemRepository = context.getBean(RollDiceItemRepository.class);
+
+        final RollDiceStorageService rollDiceStorageService = context.getBean(RollDiceStorageService.class);
+        final List<SimulationResult> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < storedSimulations; i++) {
+            batch.add(i % (storedSimulations / PAIR_SIMULATIONS) == 0 ? pairSimulation(i) : otherSimulation(i));
+            if (batch.size() == BATCH_SIZE) {
+                rollDiceStorageService.saveAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            rollDiceStorageService.saveAll(batch);
+        }
+    }
+
+    private static SimulationResult pairSimulation(int simulation) {
+        return new SimulationResult(DICE, SIDES, IntStream.rangeClosed(DICE, DICE * SIDES)
+                                                          .mapToObj(sum -> new RollDice(sum, (long) (sum + simulation % 100)))
+                                                          .collect(Collectors.toList()));
+    }
+
+    /**
+     * Simulation of one of the other pairs, with a few sums only - stored rows grow with simulations, not with their width
+     */
+    private static SimulationResult otherSimulation(int simulation) {
+        final int dice = DICE + 1 + simulation % OTHER_PAIRS;
+        return new SimulationResult(dice, 4, List.of(new RollDice(dice, 1L),
+                                                     new RollDice(dice + 1, 2L),
+                                                     new RollDice(dice * 4, (long) (1 + simulation % 10))));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<RollDistribution> relativeDistribution_1_thread() {
+        return statisticsService.relativeDistribution(DICE, SIDES);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<RollDiceResultItemEntity> pairItems_1_thread() {
+        return rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(DICE, SIDES);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<ResultAmountProjection> pairAmounts_1_thread() {
+        return rollDiceItemRepository.sumAmountsByResult(DICE, SIDES);
+    }
+}
@@ -0,0 +1,94 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.avaloq.dice.app.service.RollDiceService;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.random.DiceRandomProvider;
+import com.avaloq.dice.app.service.random.DiceRandomProviderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single dice roll throughput of all generator providers, compared with a single shared {@link Random}.
+ * Each benchmark method runs with a different threads amount to show how throughput scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomProviderContentionBenchmark {
+
+    @Param({"SHARED_RANDOM", "THREAD_LOCAL", "SPLITTABLE", "XOSHIRO256"})
+    public String provider;
+
+    private RollDiceService rollDiceService;
+
+    @Setup
+    public void setUp() {
+        rollDiceService = new RollDiceService("SHARED_RANDOM".equals(provider)
+                                                      ? new SharedRandomProvider()
+                                                      : DiceRandomProviderType.valueOf(provider).create());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int rollDice_1_thread() {
+        return rollDiceService.rollDice(6);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int rollDice_4_threads() {
+        return rollDiceService.rollDice(6);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int rollDice_max_threads() {
+        return rollDiceService.rollDice(6);
+    }
+
+    /**
+     * Single {@link Random} shared by all threads, as used before generator providers were introduced
+     */
+    static class SharedRandomProvider implements DiceRandomProvider {
+
+        private final Random random = new Random();
+
+        private final DiceRandom shared = new DiceRandom() {
+            @Override
+            public long nextLong() {
+                return random.nextLong();
+            }
+
+            @Override
+            public int nextInt(int bound) {
+                return random.nextInt(bound);
+            }
+        };
+
+        @Override
+        public DiceRandom current() {
+            return shared;
+        }
+
+        @Override
+        public DiceRandom create(long seed) {
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.avaloq.dice.app.service.RollDiceService;
+import com.avaloq.dice.app.service.random.ThreadLocalDiceRandomProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single dice roll throughput of {@link RollDiceService#rollDice(int)} with the default generator provider
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RollDiceBenchmark {
+
+    @Param({"4", "6", "20", "1000"})
+    public int sides;
+
+    private RollDiceService rollDiceService;
+
+    @Setup
+    public void setUp() {
+        rollDiceService = new RollDiceService(new ThreadLocalDiceRandomProvider());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int rollDice_1_thread() {
+        return rollDiceService.rollDice(sides);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int rollDice_4_threads() {
+        return rollDiceService.rollDice(sides);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int rollDice_max_threads() {
+        return rollDiceService.rollDice(sides);
+    }
+}
@@ -0,0 +1,79 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.service.RollMultipleDiceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Whole simulation throughput of {@link RollMultipleDiceService#rollMultipleDice(int, int, int)} -
+ * kernel selection, simulation and saving the result - across dice, sides and rolls amounts.
+ * Saved simulations are removed after each iteration, so the database does not grow during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollMultipleDiceBenchmark {
+
+    @Param({"1", "3", "10", "100"})
+    public int dice;
+
+    @Param({"6", "20"})
+    public int sides;
+
+    @Param({"1000", "100000", "10000000"})
+    public int rolls;
+
+    private ConfigurableApplicationContext context;
+    private RollMultipleDiceService rollMultipleDiceService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        rollMultipleDiceService = context.getBean(RollMultipleDiceService.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clean() {
+        context.getBean(RollDiceItemRepository.class).deleteAllInBatch();
+        context.getBean(RollDiceRepository.class).deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<RollDice> rollMultipleDice_1_thread() {
+        return rollMultipleDiceService.rollMultipleDice(dice, sides, rolls);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<RollDice> rollMultipleDice_max_threads() {
+        return rollMultipleDiceService.rollMultipleDice(dice, sides, rolls);
+    }
+}
@@ -0,0 +1,87 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.service.PersistenceMode;
+import com.avaloq.dice.app.service.RollMultipleDiceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Throughput of saving a single simulation result to H2 with {@link RollMultipleDiceService#saveRollDiceData}.
+ * Result has one row per possible sum, so dice and sides define how many rows are written.
+ * Rows are written with plain JDBC batch, cascaded through the persistence context or replaced by a single compact column
+ * ({@code dice.persistence.mode}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveRollDiceDataBenchmark {
+
+    @Param({"3", "10", "100"})
+    public int dice;
+
+    @Param({"6", "20"})
+    public int sides;
+
+    @Param({"JDBC", "JPA", "COMPACT"})
+    public PersistenceMode mode;
+
+    private ConfigurableApplicationContext context;
+    private RollMultipleDiceService rollMultipleDiceService;
+    private List<RollDice> results;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("dice.persistence.mode=" + mode);
+        rollMultipleDiceService = context.getBean(RollMultipleDiceService.class);
+        results = IntStream.rangeClosed(dice, dice * sides)
+                           .mapToObj(sum -> new RollDice(sum, 1L))
+                           .collect(Collectors.toList());
+    }
+
+    @TearDown(Level.Iteration)
+    public void clean() {
+        context.getBean(RollDiceItemRepository.class).deleteAllInBatch();
+        context.getBean(RollDiceRepository.class).deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void saveRollDiceData_1_thread() {
+        rollMultipleDiceService.saveRollDiceData(dice, sides, results);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void saveRollDiceData_4_threads() {
+        rollMultipleDiceService.saveRollDiceData(dice, sides, results);
+    }
+}
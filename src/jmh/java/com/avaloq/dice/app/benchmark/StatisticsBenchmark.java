@@ -0,0 +1,94 @@
+package com.avaloq.dice.app.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.RollDistribution;
+import com.avaloq.dice.app.model.TotalNumberSimulation;
+import com.avaloq.dice.app.service.RollMultipleDiceService;
+import com.avaloq.dice.app.service.StatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Statistics throughput of {@link StatisticsService} with given amount of simulations stored in H2.
+ * Simulations are saved once per trial, through the same service as regular ones, spread over a few dice/sides pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class StatisticsBenchmark {
+
+    private static final int[][] PAIRS = {{1, 4}, {2, 4}, {1, 6}, {2, 6}};
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int storedSimulations;
+
+    private ConfigurableApplicationContext context;
+    private StatisticsService statisticsService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        statisticsService = context.getBean(StatisticsService.class);
+
+        final RollMultipleDiceService rollMultipleDiceService = context.getBean(RollMultipleDiceService.class);
+        for (int i = 0; i < storedSimulations; i++) {
+            final int[] pair = PAIRS[i % PAIRS.length];
+            rollMultipleDiceService.saveRollDiceData(pair[0], pair[1], results(pair[0], pair[1], i));
+        }
+    }
+
+    private static List<RollDice> results(int dice, int sides, int simulation) {
+        return IntStream.rangeClosed(dice, dice * sides)
+                        .mapToObj(sum -> new RollDice(sum, (long) (sum + simulation % 100)))
+                        .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<TotalNumberSimulation> statsticsTotalNumber_1_thread() {
+        return statisticsService.statsticsTotalNumber();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<TotalNumberSimulation> statsticsTotalNumber_4_threads() {
+        return statisticsService.statsticsTotalNumber();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<RollDistribution> relativeDistribution_1_thread() {
+        return statisticsService.relativeDistribution(2, 6);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<RollDistribution> relativeDistribution_4_threads() {
+        return statisticsService.relativeDistribution(2, 6);
+    }
+}
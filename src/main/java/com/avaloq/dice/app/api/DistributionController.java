@@ -0,0 +1,41 @@
+package com.avaloq.dice.app.api;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.avaloq.dice.app.api.dto.ExactDistributionResponse;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/distribution")
+public class DistributionController {
+
+    private ExactDistributionService exactDistributionService;
+
+    public DistributionController(ExactDistributionService exactDistributionService) {
+        this.exactDistributionService = exactDistributionService;
+    }
+
+    @GetMapping("/exact")
+    public ResponseEntity<List<ExactDistributionResponse>> exactDistribution(
+            @RequestParam("dice") int diceNo,
+            @RequestParam("sides") int sidesNo) {
+
+        final ExactDistribution distribution = exactDistributionService.exactDistribution(diceNo, sidesNo);
+        List<ExactDistributionResponse> result = IntStream.rangeClosed(distribution.getMinSum(), distribution.getMaxSum())
+                                                          .mapToObj(sum -> ExactDistributionResponse.builder()
+                                                                                .sum(sum)
+                                                                                .probability(distribution.probability(sum))
+                                                                                .build())
+                                                          .collect(Collectors.toList());
+
+        return ResponseEntity.ok(result);
+    }
+}
@@ -1,34 +1,69 @@
 package com.avaloq.dice.app.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.avaloq.dice.app.api.dto.RollBatchRequest;
+import com.avaloq.dice.app.api.dto.RollBatchResponse;
 import com.avaloq.dice.app.api.dto.RollDiceResult;
+import com.avaloq.dice.app.model.BatchRollResult;
+import com.avaloq.dice.app.model.RollConfiguration;
+import com.avaloq.dice.app.service.BackgroundSimulationService;
+import com.avaloq.dice.app.service.BatchRollService;
 import com.avaloq.dice.app.service.RollMultipleDiceService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/roll")
 public class RollDiceController {
 
+    /**
+     * Newline delimited JSON - one result object per line
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
     private RollMultipleDiceService rollMultipleDiceService;
 
-    public RollDiceController(RollMultipleDiceService rollMultipleDiceService) {
+    private BackgroundSimulationService backgroundSimulationService;
+
+    private BatchRollService batchRollService;
+
+    private ObjectMapper objectMapper;
+
+    public RollDiceController(RollMultipleDiceService rollMultipleDiceService,
+                              BackgroundSimulationService backgroundSimulationService,
+                              BatchRollService batchRollService,
+                              ObjectMapper objectMapper) {
         this.rollMultipleDiceService = rollMultipleDiceService;
+        this.backgroundSimulationService = backgroundSimulationService;
+        this.batchRollService = batchRollService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
     public ResponseEntity<List<RollDiceResult>> rollDice(
             @RequestParam("dice") int numberOfDice,
             @RequestParam("sides") int numberOfDiceSides,
-            @RequestParam("rolls") int numberOfRolls) {
+            @RequestParam("rolls") int numberOfRolls,
+            @RequestParam(value = "seed", required = false) Long seed) {
 
         List<RollDiceResult> result = rollMultipleDiceService
-                                            .rollMultipleDice(numberOfDice, numberOfDiceSides, numberOfRolls)
+                                            .rollMultipleDice(numberOfDice, numberOfDiceSides, numberOfRolls, seed)
                                             .stream()
                                             .map(e -> RollDiceResult.builder()
                                                                     .amount(e.getAmount())
@@ -38,4 +73,107 @@ public class RollDiceController {
 
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * Simulation result streamed as NDJSON, when {@code application/x-ndjson} is accepted
+     * Input is validated at once, simulation is run, written and stored from the streamed body
+     */
+    @PostMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> rollDiceStream(
+            @RequestParam("dice") int numberOfDice,
+            @RequestParam("sides") int numberOfDiceSides,
+            @RequestParam("rolls") int numberOfRolls,
+            @RequestParam(value = "seed", required = false) Long seed) {
+
+        rollMultipleDiceService.validateRollDice(numberOfDice, numberOfDiceSides, numberOfRolls);
+
+        return ResponseEntity.ok()
+                             .contentType(APPLICATION_NDJSON)
+                             .body(outputStream -> writeNdjson(numberOfDice, numberOfDiceSides, numberOfRolls, seed, outputStream));
+    }
+
+    /**
+     * Simulation result streamed as NDJSON, when requested with {@code stream=true} regardless of accepted media types
+     */
+    @PostMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> rollDiceStreamRequested(
+            @RequestParam("dice") int numberOfDice,
+            @RequestParam("sides") int numberOfDiceSides,
+            @RequestParam("rolls") int numberOfRolls,
+            @RequestParam(value = "seed", required = false) Long seed) {
+        return rollDiceStream(numberOfDice, numberOfDiceSides, numberOfRolls, seed);
+    }
+
+    /**
+     * Simulation run in the background, with progress and result pushed as server-sent events
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter rollDiceProgress(
+            @RequestParam("dice") int numberOfDice,
+            @RequestParam("sides") int numberOfDiceSides,
+            @RequestParam("rolls") int numberOfRolls,
+            @RequestParam(value = "seed", required = false) Long seed) {
+
+        final RollProgressEmitter emitter = new RollProgressEmitter(numberOfRolls);
+        backgroundSimulationService.start(numberOfDice, numberOfDiceSides, numberOfRolls, seed, emitter);
+        return emitter;
+    }
+
+    /**
+     * Many simulations in a single request, results in the order of requested simulations.
+     * Improper simulations are reported with an error, the others are simulated and stored anyway.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RollBatchResponse>> rollDiceBatch(@RequestBody List<RollBatchRequest> requests) {
+        final List<RollConfiguration> configurations =
+                requests.stream()
+                        .map(e -> null == e ? new RollConfiguration(null, null, null, null)
+                                            : new RollConfiguration(e.getDice(), e.getSides(), e.getRolls(), e.getSeed()))
+                        .collect(Collectors.toList());
+
+        final List<RollBatchResponse> result = batchRollService.rollBatch(configurations)
+                                                               .stream()
+                                                               .map(RollDiceController::toBatchResponse)
+                                                               .collect(Collectors.toList());
+
+        return ResponseEntity.ok(result);
+    }
+
+    private static RollBatchResponse toBatchResponse(BatchRollResult batchResult) {
+        final RollConfiguration configuration = batchResult.getConfiguration();
+        return RollBatchResponse.builder()
+                                .dice(configuration.getDiceNo())
+                                .sides(configuration.getSidesNo())
+                                .rolls(configuration.getRolls())
+                                .seed(configuration.getSeed())
+                                .error(batchResult.getError())
+                                .result(null == batchResult.getResults() ? null
+                                        : batchResult.getResults().stream()
+                                                     .map(e -> RollDiceResult.builder()
+                                                                             .amount(e.getAmount())
+                                                                             .result(e.getResult())
+                                                                             .build())
+                                                     .collect(Collectors.toList()))
+                                .build();
+    }
+
+    /**
+     * Writes results one by one as they are passed from the simulation, without response objects -
+     * in the same format as JSON array items
+     */
+    private void writeNdjson(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed,
+                             OutputStream outputStream) throws IOException {
+        final JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.setRootValueSeparator(null);
+        rollMultipleDiceService.rollMultipleDice(numberOfDice, numberOfDiceSides, numberOfRolls, seed, (result, amount) -> {
+            generator.writeStartObject();
+            generator.writeNumberField("result", result);
+            generator.writeNumberField("amount", amount);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        });
+        // not closed when the simulation fails before anything is written - the response is not committed
+        // and the failure is answered with its own status, eg. 429 when shed by admission control
+        generator.close();
+    }
 }
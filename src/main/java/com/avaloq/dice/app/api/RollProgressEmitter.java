@@ -0,0 +1,86 @@
+package com.avaloq.dice.app.api;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.avaloq.dice.app.api.dto.RollDiceResult;
+import com.avaloq.dice.app.api.dto.RollProgressResponse;
+import com.avaloq.dice.app.exception.SimulationCancelledException;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.service.simulation.SimulationProgress;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-sent events of a simulation run in the background: {@code progress} events with rolls done, throughput
+ * and partial histogram, then a single {@code result} event with the stored result.
+ * Simulation is cancelled once the client disconnects or the stream times out.
+ */
+class RollProgressEmitter extends SseEmitter implements SimulationProgress {
+
+    static final String PROGRESS_EVENT = "progress";
+    static final String RESULT_EVENT = "result";
+
+    private final int numberOfRolls;
+    private final long startedAt = System.nanoTime();
+
+    private volatile boolean cancelled;
+
+    RollProgressEmitter(int numberOfRolls) {
+        this.numberOfRolls = numberOfRolls;
+        onCompletion(() -> cancelled = true);
+        onTimeout(() -> cancelled = true);
+        onError(e -> cancelled = true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onProgress(int rollsDone, Supplier<List<RollDice>> partialResult) {
+        final long elapsed = Math.max(1L, System.nanoTime() - startedAt);
+        final RollProgressResponse progress = RollProgressResponse.builder()
+                                                                  .rollsDone(rollsDone)
+                                                                  .rolls(numberOfRolls)
+                                                                  .rollsPerSecond((long) (rollsDone * 1e9 / elapsed))
+                                                                  .histogram(toResponse(partialResult.get()))
+                                                                  .build();
+        try {
+            send(event().name(PROGRESS_EVENT).data(progress, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            cancelled = true;
+        }
+    }
+
+    @Override
+    public void onResult(List<RollDice> result) {
+        try {
+            send(event().name(RESULT_EVENT).data(toResponse(result), MediaType.APPLICATION_JSON));
+            complete();
+        } catch (IOException e) {
+            completeWithError(e);
+        }
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+        if (e instanceof SimulationCancelledException) {
+            complete();
+        } else {
+            completeWithError(e);
+        }
+    }
+
+    private static List<RollDiceResult> toResponse(List<RollDice> rollDice) {
+        return rollDice.stream()
+                       .map(e -> RollDiceResult.builder()
+                                               .amount(e.getAmount())
+                                               .result(e.getResult())
+                                               .build())
+                       .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,77 @@
+package com.avaloq.dice.app.api;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.avaloq.dice.app.api.dto.RollDiceResult;
+import com.avaloq.dice.app.api.dto.SimulationJobResponse;
+import com.avaloq.dice.app.service.SimulationJobService;
+import com.avaloq.dice.app.service.simulation.SimulationJob;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+@RestController
+@RequestMapping("/roll/jobs")
+public class SimulationJobController {
+
+    private SimulationJobService simulationJobService;
+
+    public SimulationJobController(SimulationJobService simulationJobService) {
+        this.simulationJobService = simulationJobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<SimulationJobResponse> submit(
+            @RequestParam("dice") int numberOfDice,
+            @RequestParam("sides") int numberOfDiceSides,
+            @RequestParam("rolls") int numberOfRolls,
+            @RequestParam(value = "seed", required = false) Long seed) {
+
+        final SimulationJob job = simulationJobService.submit(numberOfDice, numberOfDiceSides, numberOfRolls, seed);
+
+        return ResponseEntity.accepted()
+                             .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                                                                  .path("/{id}")
+                                                                  .buildAndExpand(job.getId())
+                                                                  .toUri())
+                             .body(toResponse(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<SimulationJobResponse> job(@PathVariable("id") UUID id) {
+        return ResponseEntity.ok(toResponse(simulationJobService.find(id)));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<SimulationJobResponse> cancel(@PathVariable("id") UUID id) {
+        return ResponseEntity.ok(toResponse(simulationJobService.cancel(id)));
+    }
+
+    private static SimulationJobResponse toResponse(SimulationJob job) {
+        final List<RollDiceResult> result = null == job.getResult() ? null
+                : job.getResult().stream()
+                     .map(e -> RollDiceResult.builder()
+                                             .amount(e.getAmount())
+                                             .result(e.getResult())
+                                             .build())
+                     .collect(Collectors.toList());
+
+        return SimulationJobResponse.builder()
+                                    .id(job.getId())
+                                    .status(job.getStatus().name())
+                                    .dice(job.getNumberOfDice())
+                                    .sides(job.getNumberOfDiceSides())
+                                    .rolls(job.getNumberOfRolls())
+                                    .rollsDone(job.getRollsDone())
+                                    .result(result)
+                                    .build();
+    }
+}
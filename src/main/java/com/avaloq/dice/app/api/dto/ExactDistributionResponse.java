@@ -0,0 +1,12 @@
+package com.avaloq.dice.app.api.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ExactDistributionResponse {
+
+    private Integer sum;
+    private Double probability;
+}
@@ -0,0 +1,18 @@
+package com.avaloq.dice.app.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollBatchRequest {
+
+    private Integer dice;
+    private Integer sides;
+    private Integer rolls;
+    private Long seed;
+}
@@ -0,0 +1,18 @@
+package com.avaloq.dice.app.api.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RollBatchResponse {
+
+    private Integer dice;
+    private Integer sides;
+    private Integer rolls;
+    private Long seed;
+    private String error;
+    private List<RollDiceResult> result;
+}
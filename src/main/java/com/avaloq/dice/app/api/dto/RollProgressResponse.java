@@ -0,0 +1,16 @@
+package com.avaloq.dice.app.api.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RollProgressResponse {
+
+    private Integer rollsDone;
+    private Integer rolls;
+    private Long rollsPerSecond;
+    private List<RollDiceResult> histogram;
+}
@@ -0,0 +1,20 @@
+package com.avaloq.dice.app.api.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SimulationJobResponse {
+
+    private UUID id;
+    private String status;
+    private Integer dice;
+    private Integer sides;
+    private Integer rolls;
+    private Integer rollsDone;
+    private List<RollDiceResult> result;
+}
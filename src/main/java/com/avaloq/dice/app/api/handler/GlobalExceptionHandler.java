@@ -3,7 +3,12 @@ package com.avaloq.dice.app.api.handler;
 import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
 import com.avaloq.dice.app.exception.DiceSidesAmountException;
 import com.avaloq.dice.app.exception.NoSimulationsException;
+import com.avaloq.dice.app.exception.SimulationJobNotFoundException;
+import com.avaloq.dice.app.exception.SimulationOverloadedException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -20,4 +25,22 @@ public class GlobalExceptionHandler {
     @ExceptionHandler({ NoSimulationsException.class})
     public void handleNoSimulations() { }
 
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler({ SimulationRejectedException.class})
+    public void handleSimulationRejected() { }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler({ SimulationJobNotFoundException.class})
+    public void handleSimulationJobNotFound() { }
+
+    /**
+     * Shed at once as too many simulations are waiting - 429, waited for the compute budget too long - 503
+     */
+    @ExceptionHandler({ SimulationOverloadedException.class})
+    public ResponseEntity<Void> handleSimulationOverloaded(SimulationOverloadedException e) {
+        return ResponseEntity.status(e.isQueueFull() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                             .build();
+    }
+
 }
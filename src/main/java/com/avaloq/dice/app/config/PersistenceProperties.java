@@ -0,0 +1,87 @@
+package com.avaloq.dice.app.config;
+
+import java.time.Duration;
+
+import com.avaloq.dice.app.service.PersistenceMode;
+import com.avaloq.dice.app.service.persistence.WriteBehindOverflow;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Simulations persistence configuration, bound from {@code dice.persistence.*} properties
+ */
+@Data
+@ConfigurationProperties(prefix = "dice.persistence")
+public class PersistenceProperties {
+
+    /**
+     * How simulation result items are written - through the persistence context, with plain JDBC batch
+     * or as a compact histogram column of the simulation row
+     */
+    private PersistenceMode mode = PersistenceMode.JDBC;
+
+    /**
+     * Whether simulations are stored by a background writer, so requests do not wait for the database
+     */
+    private boolean writeBehind = false;
+
+    /**
+     * Amount of simulations waiting to be stored by the background writer
+     */
+    private int writeBehindCapacity = 1024;
+
+    /**
+     * Maximum amount of simulations stored by the background writer, or of a single batch request, in a single transaction
+     */
+    private int writeBehindBatchSize = 64;
+
+    /**
+     * What happens when write-behind queue is full: block, shed or sync
+     */
+    private WriteBehindOverflow writeBehindOverflow = WriteBehindOverflow.SYNC;
+
+    /**
+     * How long a request waits for room in the full write-behind queue with block overflow, it stores the simulation by itself then
+     */
+    private Duration writeBehindBlockTimeout = Duration.ofSeconds(5);
+
+    /**
+     * How many times the background writer retries a failed batch before storing its simulations one by one
+     */
+    private int writeBehindRetries = 3;
+
+    /**
+     * Wait before the first retry of a failed batch, doubled with every next retry
+     */
+    private Duration writeBehindRetryBackoff = Duration.ofMillis(200);
+
+    /**
+     * How long graceful shutdown waits for queued simulations to be stored
+     */
+    private Duration writeBehindShutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Whether simulations stored as result items are converted into compact histograms after startup
+     */
+    private boolean compactMigration = false;
+
+    /**
+     * Amount of simulations converted into compact histograms in a single transaction
+     */
+    private int compactMigrationBatchSize = 500;
+
+    /**
+     * Whether simulations of every pair are periodically merged into a single row
+     */
+    private boolean compaction = false;
+
+    /**
+     * How often simulations are merged
+     */
+    private Duration compactionInterval = Duration.ofMinutes(10);
+
+    /**
+     * Amount of simulations merged in a single transaction
+     */
+    private int compactionBatchSize = 1000;
+}
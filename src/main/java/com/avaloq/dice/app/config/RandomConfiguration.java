@@ -0,0 +1,14 @@
+package com.avaloq.dice.app.config;
+
+import com.avaloq.dice.app.service.random.DiceRandomProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RandomConfiguration {
+
+    @Bean
+    public DiceRandomProvider diceRandomProvider(SimulationProperties simulationProperties) {
+        return simulationProperties.getRandomProvider().create();
+    }
+}
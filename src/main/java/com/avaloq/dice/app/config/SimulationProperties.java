@@ -0,0 +1,133 @@
+package com.avaloq.dice.app.config;
+
+import java.time.Duration;
+
+import com.avaloq.dice.app.service.random.DiceRandomProviderType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Simulation tuning configuration, bound from {@code dice.simulation.*} properties
+ */
+@Data
+@ConfigurationProperties(prefix = "dice.simulation")
+public class SimulationProperties {
+
+    /**
+     * Amount of rolls from which simulation may be executed in parallel, when cheaper according to the cost model
+     */
+    private int parallelThreshold = 1_000_000;
+
+    /**
+     * Amount of rolls simulated with a single random generator split.
+     * Chunking does not depend on the cores amount, so seeded simulations are reproducible on any machine.
+     */
+    private int chunkSize = 65_536;
+
+    /**
+     * Parallelism of simulation fork/join pool
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Amount of single dice rolls (dice * rolls) from which simulation histogram may be drawn
+     * directly from the exact sum distribution instead of rolling every dice
+     */
+    private long multinomialThreshold = 100_000_000L;
+
+    /**
+     * Dice number from which rolls may be drawn from an alias table of the exact sum distribution
+     */
+    private int aliasDiceThreshold = 50;
+
+    /**
+     * Total amount of alias table columns kept in cache (12 bytes each)
+     */
+    private long aliasCacheMaxColumns = 4_000_000L;
+
+    /**
+     * Whether simulation kernels costs are measured at startup, reference costs are used otherwise
+     */
+    private boolean calibrate = true;
+
+    /**
+     * Random generators used for rolling dice
+     */
+    private DiceRandomProviderType randomProvider = DiceRandomProviderType.THREAD_LOCAL;
+
+    /**
+     * Total amount of exact sum distributions columns kept in LRU cache (16 bytes each)
+     */
+    private long exactDistributionCacheMaxColumns = 4_000_000L;
+
+    /**
+     * Exact sum distributions with more columns are computed on every request, not cached
+     */
+    private int exactDistributionCacheMaxEntryColumns = 524_288;
+
+    /**
+     * Rolls simulated between progress reports of simulations run in the background
+     */
+    private int progressStep = 4_194_304;
+
+    /**
+     * Minimal time between progress reports of simulations run in the background
+     */
+    private Duration progressInterval = Duration.ofMillis(500);
+
+    /**
+     * Threads of the pool running simulations in the background
+     */
+    private int workerThreads = 2;
+
+    /**
+     * Simulations waiting for a background thread, more are rejected
+     */
+    private int workerQueueCapacity = 16;
+
+    /**
+     * Time for which finished simulation jobs are kept for polling
+     */
+    private Duration jobRetention = Duration.ofMinutes(10);
+
+    /**
+     * Maximal amount of simulation jobs kept at once, queued, running and finished ones - more are rejected
+     */
+    private int jobMaxRetained = 1000;
+
+    /**
+     * Interval at which expired simulation jobs are removed
+     */
+    private Duration jobSweepInterval = Duration.ofMinutes(1);
+
+    /**
+     * Maximal amount of simulations requested in a single batch
+     */
+    private int batchMaxSize = 1000;
+
+    /**
+     * Whether simulations have to be admitted against the compute budget
+     */
+    private boolean admissionEnabled = true;
+
+    /**
+     * Estimated CPU time of admitted simulations which may be in progress at once.
+     * A simulation estimated above the whole budget is admitted only when nothing else is in progress.
+     */
+    private Duration admissionBudget = Duration.ofSeconds(10L * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximal estimated CPU time of a single simulation, more expensive ones are shed at once
+     */
+    private Duration admissionMaxCost = Duration.ofSeconds(60L * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Simulations which may wait for the budget, more are shed at once
+     */
+    private int admissionQueueCapacity = 64;
+
+    /**
+     * Maximal time a simulation waits for the budget before it is shed
+     */
+    private Duration admissionMaxWait = Duration.ofSeconds(10);
+}
@@ -0,0 +1,23 @@
+package com.avaloq.dice.app.config;
+
+import com.avaloq.dice.app.service.statistics.StatisticsAggregation;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Statistics configuration, bound from {@code dice.statistics.*} properties
+ */
+@Data
+@ConfigurationProperties(prefix = "dice.statistics")
+public class StatisticsProperties {
+
+    /**
+     * Serve statistics from in-memory store warmed at startup instead of reading the database on each request
+     */
+    private boolean live = true;
+
+    /**
+     * Place where statistics read from the database are aggregated - in Java or with {@code GROUP BY} queries
+     */
+    private StatisticsAggregation aggregation = StatisticsAggregation.JAVA;
+}
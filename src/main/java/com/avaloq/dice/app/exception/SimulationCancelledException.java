@@ -0,0 +1,8 @@
+package com.avaloq.dice.app.exception;
+
+/**
+ * Exception thrown when simulation run in the background has been cancelled before all rolls were simulated
+ */
+public class SimulationCancelledException extends RuntimeException {
+
+}
@@ -0,0 +1,8 @@
+package com.avaloq.dice.app.exception;
+
+/**
+ * Exception thrown when there is no simulation job of the given id - it has never been submitted or has already expired
+ */
+public class SimulationJobNotFoundException extends RuntimeException {
+
+}
@@ -0,0 +1,27 @@
+package com.avaloq.dice.app.exception;
+
+/**
+ * Exception thrown when a simulation is shed by admission control - there is no compute budget left for it
+ */
+public class SimulationOverloadedException extends RuntimeException {
+
+    private final boolean queueFull;
+    private final long retryAfterSeconds;
+
+    /**
+     * @param queueFull true if shed at once as too many simulations are waiting, false if waited for the budget too long
+     * @param retryAfterSeconds estimated time after which the budget should be available again
+     */
+    public SimulationOverloadedException(boolean queueFull, long retryAfterSeconds) {
+        this.queueFull = queueFull;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
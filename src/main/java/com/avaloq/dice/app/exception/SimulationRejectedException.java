@@ -0,0 +1,8 @@
+package com.avaloq.dice.app.exception;
+
+/**
+ * Exception thrown when there is no capacity left to run or keep another simulation in the background
+ */
+public class SimulationRejectedException extends RuntimeException {
+
+}
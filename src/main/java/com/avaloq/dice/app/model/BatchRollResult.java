@@ -0,0 +1,16 @@
+package com.avaloq.dice.app.model;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Outcome of a single simulation of a batch - its result, or the reason why it has not been simulated
+ */
+@Value
+public class BatchRollResult {
+
+    RollConfiguration configuration;
+    List<RollDice> results;
+    String error;
+}
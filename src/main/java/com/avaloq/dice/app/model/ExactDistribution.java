@@ -0,0 +1,74 @@
+package com.avaloq.dice.app.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Exact probability distribution of a sum of dice, immutable as it is shared through cache
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExactDistribution {
+
+    private final int diceNo;
+    private final int sidesNo;
+    @Getter(AccessLevel.NONE)
+    private final double[] probabilities;
+    @Getter(AccessLevel.NONE)
+    private final double[] tailProbabilities;
+
+    /**
+     * @param diceNo dice number
+     * @param sidesNo sides number
+     * @param probabilities probabilities of sums, from minimal to maximal sum
+     * @return Distribution with tail probabilities summed up front
+     */
+    public static ExactDistribution of(int diceNo, int sidesNo, double[] probabilities) {
+        final double[] tailProbabilities = new double[probabilities.length];
+        double tail = 0.0;
+        for (int i = probabilities.length - 1; i >= 0; i--) {
+            tail += probabilities[i];
+            tailProbabilities[i] = tail;
+        }
+        return new ExactDistribution(diceNo, sidesNo, probabilities, tailProbabilities);
+    }
+
+    public int getMinSum() {
+        return diceNo;
+    }
+
+    public int getMaxSum() {
+        return diceNo + probabilities.length - 1;
+    }
+
+    /**
+     * @return Amount of sums with probability, from minimal to maximal sum
+     */
+    public int size() {
+        return probabilities.length;
+    }
+
+    /**
+     * @param sum sum of dice
+     * @return probability of rolling given sum, 0 for sums out of range
+     */
+    public double probability(int sum) {
+        if (sum < getMinSum() || sum > getMaxSum()) {
+            return 0.0;
+        }
+        return probabilities[sum - diceNo];
+    }
+
+    /**
+     * Summed from the maximal sum down, so it is never smaller than {@link #probability} of the same sum
+     * @param sum sum of dice
+     * @return probability of rolling given sum or greater, 0 for sums above the range
+     */
+    public double tailProbability(int sum) {
+        if (sum > getMaxSum()) {
+            return 0.0;
+        }
+        return tailProbabilities[Math.max(sum, getMinSum()) - diceNo];
+    }
+}
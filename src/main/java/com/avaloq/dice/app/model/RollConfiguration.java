@@ -0,0 +1,15 @@
+package com.avaloq.dice.app.model;
+
+import lombok.Value;
+
+/**
+ * Input of a single simulation requested in a batch, not validated yet
+ */
+@Value
+public class RollConfiguration {
+
+    Integer diceNo;
+    Integer sidesNo;
+    Integer rolls;
+    Long seed;
+}
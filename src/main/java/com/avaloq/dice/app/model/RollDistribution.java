@@ -10,5 +10,16 @@ import lombok.Data;
 public class RollDistribution {
 
     Integer sum;
-    BigDecimal percentage;
+
+    /**
+     * Percentage multiplied by 100 - exact value with two decimal places
+     */
+    long scaledPercentage;
+
+    /**
+     * @return Percentage with two decimal places, created only when read
+     */
+    public BigDecimal getPercentage() {
+        return BigDecimal.valueOf(scaledPercentage, 2);
+    }
 }
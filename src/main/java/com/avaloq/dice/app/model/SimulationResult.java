@@ -0,0 +1,16 @@
+package com.avaloq.dice.app.model;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Finished simulation of given dice number and sides number pair, to be stored
+ */
+@Value
+public class SimulationResult {
+
+    int diceNo;
+    int sidesNo;
+    List<RollDice> results;
+}
@@ -0,0 +1,31 @@
+package com.avaloq.dice.app.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RollDiceAggregateRepository extends JpaRepository<RollDiceAggregateEntity, RollDiceAggregateId> {
+
+    /**
+     * Aggregate locked until the end of current transaction, so concurrent simulations of the same pair are added one by one
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from RollDiceAggregateEntity a where a.diceNo = :diceNo and a.sidesNo = :sidesNo")
+    Optional<RollDiceAggregateEntity> findForUpdate(@Param("diceNo") int diceNo, @Param("sidesNo") int sidesNo);
+
+    /**
+     * All aggregates with their per sum amounts read in a single query
+     */
+    @Query("select distinct a from RollDiceAggregateEntity a left join fetch a.resultAmounts")
+    List<RollDiceAggregateEntity> findAllWithResultAmounts();
+}
@@ -0,0 +1,86 @@
+package com.avaloq.dice.app.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Inserts simulation result items with plain JDBC batches, bypassing the persistence context.
+ * Ids are reserved from the items sequence in blocks of {@link RollDiceResultItemEntity#ID_ALLOCATION_SIZE},
+ * the same way Hibernate does, so both writers may be used together.
+ */
+@Repository
+public class RollDiceItemJdbcRepository {
+
+    private static final String INSERT_ITEM =
+            "insert into ROLL_DICE_RESULT_ITEM (ID, ROLL_DICE_RESULT_ID, RESULT, AMOUNT) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextIdBlockQuery;
+
+    public RollDiceItemJdbcRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextIdBlockQuery = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                                                    .getJdbcServices().getDialect()
+                                                    .getSequenceNextValString(RollDiceResultItemEntity.ID_SEQUENCE);
+    }
+
+    /**
+     * Inserts items of saved simulations with a single batch, in the transaction which saved the simulations
+     * @param rollDiceResultIds ids of saved simulations, their rows must be already flushed
+     * @param rollDiceResults Simulations results, in the same order as ids
+     */
+    public void insert(List<Long> rollDiceResultIds, List<List<RollDice>> rollDiceResults) {
+        final List<RollDice> items = new ArrayList<>();
+        final List<Long> owners = new ArrayList<>();
+        for (int i = 0; i < rollDiceResultIds.size(); i++) {
+            for (RollDice item : rollDiceResults.get(i)) {
+                items.add(item);
+                owners.add(rollDiceResultIds.get(i));
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+        final long[] ids = nextIds(items.size());
+        jdbcTemplate.batchUpdate(INSERT_ITEM, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                final RollDice item = items.get(i);
+                ps.setLong(1, ids[i]);
+                ps.setLong(2, owners.get(i));
+                ps.setInt(3, item.getResult());
+                ps.setLong(4, item.getAmount());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.length;
+            }
+        });
+    }
+
+    private long[] nextIds(int amount) {
+        final long[] ids = new long[amount];
+        long next = 0L;
+        long blockEnd = 0L;
+        for (int i = 0; i < amount; i++) {
+            if (next == blockEnd) {
+                next = jdbcTemplate.queryForObject(nextIdBlockQuery, Long.class);
+                blockEnd = next + RollDiceResultItemEntity.ID_ALLOCATION_SIZE;
+            }
+            ids[i] = next++;
+        }
+        return ids;
+    }
+}
@@ -1,18 +1,71 @@
 package com.avaloq.dice.app.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
+import javax.persistence.QueryHint;
+
+import com.avaloq.dice.app.repository.model.PairResultAmountProjection;
+import com.avaloq.dice.app.repository.model.ResultAmountProjection;
 import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.repository.model.SimulationResultAmountProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface RollDiceItemRepository extends JpaRepository<RollDiceResultItemEntity, Long> {
 
+    /**
+     * Rolls amount of all simulations stored with result items
+     */
     @Query("select SUM(e.amount) from RollDiceResultItemEntity e")
     Long sumAllSimulationRolls();
 
+    /**
+     * All items as flat rows with dice number and sides number of their simulation, fetched in chunks -
+     * to be consumed in a transaction and closed
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = RollDiceRepository.STREAM_FETCH_SIZE),
+                 @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select r.diceNo as diceNo, r.sidesNo as sidesNo, i.result as result, i.amount as amount "
+            + "from RollDiceResultItemEntity i join i.rollDiceResult r")
+    Stream<PairResultAmountProjection> streamAll();
+
     List<RollDiceResultItemEntity> findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(int diceNo, int sidesNo);
+
+    /**
+     * Rolls amount per sum of given dice number and sides number pair
+     */
+    @Query("select i.result as result, sum(i.amount) as amount from RollDiceResultItemEntity i "
+            + "where i.rollDiceResult.diceNo = :diceNo and i.rollDiceResult.sidesNo = :sidesNo group by i.result")
+    List<ResultAmountProjection> sumAmountsByResult(@Param("diceNo") int diceNo, @Param("sidesNo") int sidesNo);
+
+    /**
+     * Rolls amount per sum of given simulations
+     */
+    @Query("select i.result as result, sum(i.amount) as amount from RollDiceResultItemEntity i "
+            + "where i.rollDiceResult.id in :ids group by i.result")
+    List<ResultAmountProjection> sumAmountsByResultIn(@Param("ids") Collection<Long> rollDiceResultIds);
+
+    /**
+     * Items of given simulations as flat rows, without loading the simulations
+     */
+    @Query("select i.rollDiceResult.id as simulationId, i.result as result, i.amount as amount "
+            + "from RollDiceResultItemEntity i where i.rollDiceResult.id in :ids")
+    List<SimulationResultAmountProjection> findAmountsByRollDiceResultIdIn(@Param("ids") Collection<Long> rollDiceResultIds);
+
+    /**
+     * Deletes items of given simulations without loading them
+     */
+    @Modifying
+    @Query("delete from RollDiceResultItemEntity i where i.rollDiceResult.id in :ids")
+    int deleteByRollDiceResultIdIn(@Param("ids") Collection<Long> rollDiceResultIds);
 }
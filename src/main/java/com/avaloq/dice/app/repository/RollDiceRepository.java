@@ -1,13 +1,133 @@
 package com.avaloq.dice.app.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import com.avaloq.dice.app.repository.model.PairHistogramProjection;
+import com.avaloq.dice.app.repository.model.PairResultAmountProjection;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateId;
 import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
-import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.repository.model.SimulationRowProjection;
+import com.avaloq.dice.app.repository.model.SimulationTotalsProjection;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface RollDiceRepository extends JpaRepository<RollDiceResultEntity, Long> {
+
+    /**
+     * Rows fetched from the database at once by streaming queries
+     */
+    String STREAM_FETCH_SIZE = "1000";
+
+    /**
+     * All simulations without their result items, fetched in chunks - to be consumed in a transaction and closed
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select r.diceNo as diceNo, r.sidesNo as sidesNo, r.simulations as simulations, r.histogram as histogram "
+            + "from RollDiceResultEntity r")
+    Stream<SimulationRowProjection> streamAll();
+
+    /**
+     * Simulations amount and rolls of compact histograms per dice number and sides number pair
+     * Rolls of simulations stored as result items are aggregated by {@link #aggregateResultAmounts()}
+     */
+    @Query("select r.diceNo as diceNo, r.sidesNo as sidesNo, sum(r.simulations) as totalSimulations, "
+            + "coalesce(sum(r.rolls), 0) as totalRolls "
+            + "from RollDiceResultEntity r "
+            + "group by r.diceNo, r.sidesNo order by r.diceNo, r.sidesNo")
+    List<SimulationTotalsProjection> aggregateTotals();
+
+    /**
+     * Rolls amount per dice number, sides number and sum
+     */
+    @Query("select r.diceNo as diceNo, r.sidesNo as sidesNo, i.result as result, sum(i.amount) as amount "
+            + "from RollDiceResultItemEntity i join i.rollDiceResult r "
+            + "group by r.diceNo, r.sidesNo, i.result")
+    List<PairResultAmountProjection> aggregateResultAmounts();
+
+    /**
+     * Compact histograms of all simulations stored in compact format
+     */
+    @Query("select r.diceNo as diceNo, r.sidesNo as sidesNo, r.histogram as histogram "
+            + "from RollDiceResultEntity r where r.rolls is not null")
+    List<PairHistogramProjection> findPairHistograms();
+
+    /**
+     * Compact histograms of given dice number and sides number pair
+     */
+    @Query("select r.histogram from RollDiceResultEntity r "
+            + "where r.diceNo = :diceNo and r.sidesNo = :sidesNo and r.rolls is not null")
+    List<Map<Integer, Long>> findHistograms(@Param("diceNo") int diceNo, @Param("sidesNo") int sidesNo);
+
+    /**
+     * Rolls amount of all simulations stored in compact format
+     */
+    @Query("select sum(r.rolls) from RollDiceResultEntity r")
+    Long sumCompactRolls();
+
+    /**
+     * Pairs with more than one simulation row, which may be compacted
+     */
+    @Query("select new com.avaloq.dice.app.repository.model.RollDiceAggregateId(r.diceNo, r.sidesNo) "
+            + "from RollDiceResultEntity r group by r.diceNo, r.sidesNo having count(r) > 1")
+    List<RollDiceAggregateId> findPairsToCompact();
+
+    @Query("select max(r.id) from RollDiceResultEntity r")
+    Long findMaxId();
+
+    /**
+     * Ids of simulations of given pair up to given id, oldest first
+     */
+    @Query("select r.id from RollDiceResultEntity r "
+            + "where r.diceNo = :diceNo and r.sidesNo = :sidesNo and r.id <= :maxId order by r.id")
+    List<Long> findIdsToCompact(@Param("diceNo") int diceNo, @Param("sidesNo") int sidesNo,
+                                @Param("maxId") long maxId, Pageable pageable);
+
+    @Query("select r.histogram from RollDiceResultEntity r where r.id in :ids and r.rolls is not null")
+    List<Map<Integer, Long>> findHistogramsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select sum(r.simulations) from RollDiceResultEntity r where r.id in :ids")
+    Long sumSimulationsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes simulations without loading them, their items have to be deleted first
+     */
+    @Modifying
+    @Query("delete from RollDiceResultEntity r where r.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Ids of simulations still stored as result items, oldest first
+     */
+    @Query("select r.id from RollDiceResultEntity r where r.rolls is null and r.resultItems is not empty order by r.id")
+    List<Long> findIdsStoredAsItems(Pageable pageable);
+
+    /**
+     * Stores simulation as compact histogram without loading it, its items have to be deleted separately
+     */
+    @Modifying
+    @Query("update RollDiceResultEntity r set r.histogram = :histogram, r.rolls = :rolls where r.id = :id")
+    int updateHistogram(@Param("id") long id, @Param("histogram") Map<Integer, Long> histogram, @Param("rolls") long rolls);
+
+    /**
+     * Stores merged simulations as compact histogram without loading it, its items have to be deleted separately
+     */
+    @Modifying
+    @Query("update RollDiceResultEntity r set r.histogram = :histogram, r.rolls = :rolls, r.simulations = :simulations "
+            + "where r.id = :id")
+    int updateHistogram(@Param("id") long id, @Param("histogram") Map<Integer, Long> histogram, @Param("rolls") long rolls,
+                        @Param("simulations") long simulations);
 }
@@ -0,0 +1,150 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compact binary format of a simulation histogram - rolls amount per sum.
+ * Format byte is followed by zig-zag varint of the lowest sum, then either:
+ * <ul>
+ * <li>dense - varint of sums range and varint amount of every sum in the range, zero for sums never rolled</li>
+ * <li>sparse - varint of entries amount and for every entry varint delta from the previous sum and varint amount</li>
+ * </ul>
+ * Dense format is used when at most half of the range has never been rolled, so a histogram of 100d6 takes
+ * a single byte per sum rolled less than 128 times instead of an item row.
+ */
+public final class HistogramCodec {
+
+    static final byte DENSE = 1;
+    static final byte SPARSE = 2;
+
+    private HistogramCodec() {
+    }
+
+    /**
+     * @param amounts rolls amount per sum, amounts can not be negative
+     * @return Encoded histogram
+     */
+    public static byte[] encode(Map<Integer, Long> amounts) {
+        final SortedMap<Integer, Long> sorted = amounts instanceof SortedMap ? (SortedMap<Integer, Long>) amounts : new TreeMap<>(amounts);
+        final Buffer buffer = new Buffer(sorted.size() * 2 + 12);
+        if (sorted.isEmpty()) {
+            buffer.put(DENSE);
+            buffer.putVarLong(0L);
+            buffer.putVarLong(0L);
+            return buffer.toArray();
+        }
+
+        final int lowest = sorted.firstKey();
+        final long range = (long) sorted.lastKey() - lowest + 1;
+        if (range - sorted.size() <= sorted.size()) {
+            buffer.put(DENSE);
+            buffer.putVarLong(zigZag(lowest));
+            buffer.putVarLong(range);
+            int expected = lowest;
+            for (Map.Entry<Integer, Long> e : sorted.entrySet()) {
+                for (; expected < e.getKey(); expected++) {
+                    buffer.putVarLong(0L);
+                }
+                buffer.putVarLong(amount(e.getValue()));
+                expected++;
+            }
+        } else {
+            buffer.put(SPARSE);
+            buffer.putVarLong(zigZag(lowest));
+            buffer.putVarLong(sorted.size());
+            int previous = lowest;
+            for (Map.Entry<Integer, Long> e : sorted.entrySet()) {
+                buffer.putVarLong((long) e.getKey() - previous);
+                buffer.putVarLong(amount(e.getValue()));
+                previous = e.getKey();
+            }
+        }
+        return buffer.toArray();
+    }
+
+    /**
+     * @param encoded histogram encoded with {@link #encode(Map)}
+     * @return Rolls amount per sum ordered by sum, sums never rolled are omitted
+     */
+    public static TreeMap<Integer, Long> decode(byte[] encoded) {
+        final int[] position = {1};
+        final TreeMap<Integer, Long> amounts = new TreeMap<>();
+        final int lowest = unZigZag(varLong(encoded, position));
+        final long size = varLong(encoded, position);
+        if (encoded[0] == DENSE) {
+            for (int i = 0; i < size; i++) {
+                final long amount = varLong(encoded, position);
+                if (0L != amount) {
+                    amounts.put(lowest + i, amount);
+                }
+            }
+        } else if (encoded[0] == SPARSE) {
+            int sum = lowest;
+            for (int i = 0; i < size; i++) {
+                sum += (int) varLong(encoded, position);
+                amounts.put(sum, varLong(encoded, position));
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown histogram format " + encoded[0]);
+        }
+        return amounts;
+    }
+
+    private static long amount(Long amount) {
+        if (amount < 0L) {
+            throw new IllegalArgumentException("Negative rolls amount " + amount);
+        }
+        return amount;
+    }
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unZigZag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private static long varLong(byte[] encoded, int[] position) {
+        long value = 0L;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = encoded[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes;
+        private int size;
+
+        private Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void put(byte b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[size++] = b;
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0L) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        private byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
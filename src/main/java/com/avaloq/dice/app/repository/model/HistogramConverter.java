@@ -0,0 +1,23 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.util.Map;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores simulation histogram as a single compact column, see {@link HistogramCodec}
+ */
+@Converter
+public class HistogramConverter implements AttributeConverter<Map<Integer, Long>, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(Map<Integer, Long> amounts) {
+        return null != amounts ? HistogramCodec.encode(amounts) : null;
+    }
+
+    @Override
+    public Map<Integer, Long> convertToEntityAttribute(byte[] encoded) {
+        return null != encoded ? HistogramCodec.decode(encoded) : null;
+    }
+}
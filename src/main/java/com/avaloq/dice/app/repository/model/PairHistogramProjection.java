@@ -0,0 +1,15 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.util.Map;
+
+/**
+ * Compact histogram of a single simulation of a single dice number and sides number pair
+ */
+public interface PairHistogramProjection {
+
+    Integer getDiceNo();
+
+    Integer getSidesNo();
+
+    Map<Integer, Long> getHistogram();
+}
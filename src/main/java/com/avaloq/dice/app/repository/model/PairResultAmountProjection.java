@@ -0,0 +1,11 @@
+package com.avaloq.dice.app.repository.model;
+
+/**
+ * Amount of rolls with a single sum of a single dice number and sides number pair, aggregated by the database
+ */
+public interface PairResultAmountProjection extends ResultAmountProjection {
+
+    Integer getDiceNo();
+
+    Integer getSidesNo();
+}
@@ -0,0 +1,11 @@
+package com.avaloq.dice.app.repository.model;
+
+/**
+ * Amount of rolls with a single sum, aggregated by the database
+ */
+public interface ResultAmountProjection {
+
+    Integer getResult();
+
+    Long getAmount();
+}
@@ -0,0 +1,60 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.util.Map;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Totals of all simulations of a single dice number and sides number pair,
+ * maintained together with every saved simulation
+ */
+@Entity
+@Table(name = "ROLL_DICE_AGGREGATE")
+@IdClass(RollDiceAggregateId.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(exclude = "resultAmounts")
+@ToString(exclude = "resultAmounts")
+public class RollDiceAggregateEntity {
+
+    @Id
+    @Column(name = "DICE_NO")
+    private Integer diceNo;
+
+    @Id
+    @Column(name = "SIDES_NO")
+    private Integer sidesNo;
+
+    @Column(nullable = false)
+    private Long totalSimulations;
+
+    @Column(nullable = false)
+    private Long totalRolls;
+
+    /**
+     * Amount of rolls per sum
+     */
+    @ElementCollection
+    @CollectionTable(
+            name = "ROLL_DICE_AGGREGATE_ITEM",
+            joinColumns = {@JoinColumn(name = "DICE_NO", referencedColumnName = "DICE_NO"),
+                           @JoinColumn(name = "SIDES_NO", referencedColumnName = "SIDES_NO")})
+    @MapKeyColumn(name = "RESULT")
+    @Column(name = "AMOUNT", nullable = false)
+    private Map<Integer, Long> resultAmounts;
+}
@@ -0,0 +1,17 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RollDiceAggregateId implements Serializable {
+
+    private Integer diceNo;
+
+    private Integer sidesNo;
+}
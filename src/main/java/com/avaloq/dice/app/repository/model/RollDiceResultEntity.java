@@ -1,15 +1,19 @@
 package com.avaloq.dice.app.repository.model;
 
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Lob;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
 import lombok.AllArgsConstructor;
@@ -23,8 +27,14 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class RollDiceResultEntity {
 
+    /**
+     * Ids are allocated from the sequence in blocks, so saving a simulation does not cost a sequence round trip
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rollDiceResultId")
+    @SequenceGenerator(name = "rollDiceResultId", sequenceName = "ROLL_DICE_RESULT_SEQ", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -39,4 +49,26 @@ public class RollDiceResultEntity {
             mappedBy = "rollDiceResult",
             orphanRemoval = true)
     private Set<RollDiceResultItemEntity> resultItems;
+
+    /**
+     * Rolls amount per sum stored in a single compact column, instead of result items
+     */
+    @Lob
+    @Convert(converter = HistogramConverter.class)
+    private Map<Integer, Long> histogram;
+
+    /**
+     * Total rolls of compact histogram, null if simulation is stored as result items
+     */
+    private Long rolls;
+
+    /**
+     * Amount of simulations stored in the row - more than one if simulations of the pair have been compacted
+     */
+    @Column(nullable = false)
+    private Long simulations = 1L;
+
+    public RollDiceResultEntity(Long id, Integer diceNo, Integer sidesNo, Set<RollDiceResultItemEntity> resultItems) {
+        this(id, diceNo, sidesNo, resultItems, null, null, 1L);
+    }
 }
@@ -7,6 +7,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
 import lombok.AllArgsConstructor;
@@ -22,8 +23,17 @@ import lombok.NoArgsConstructor;
 @EqualsAndHashCode(exclude = "rollDiceResult")
 public class RollDiceResultItemEntity {
 
+    public static final String ID_SEQUENCE = "ROLL_DICE_RESULT_ITEM_SEQ";
+
+    /**
+     * Ids are allocated from the sequence in blocks - {@code pooled-lo}: sequence value is the first id of a block.
+     * Items inserted with plain JDBC reserve their ids from the same sequence the same way.
+     */
+    public static final int ID_ALLOCATION_SIZE = 1000;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rollDiceResultItemId")
+    @SequenceGenerator(name = "rollDiceResultItemId", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
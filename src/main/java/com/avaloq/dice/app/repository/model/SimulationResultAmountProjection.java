@@ -0,0 +1,13 @@
+package com.avaloq.dice.app.repository.model;
+
+/**
+ * Amount of rolls with a single sum of a single simulation stored as result items
+ */
+public interface SimulationResultAmountProjection {
+
+    Long getSimulationId();
+
+    Integer getResult();
+
+    Long getAmount();
+}
@@ -0,0 +1,20 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.util.Map;
+
+/**
+ * Simulation row without its result items
+ */
+public interface SimulationRowProjection {
+
+    Integer getDiceNo();
+
+    Integer getSidesNo();
+
+    Long getSimulations();
+
+    /**
+     * @return Compact histogram, null if simulation is stored as result items
+     */
+    Map<Integer, Long> getHistogram();
+}
@@ -0,0 +1,15 @@
+package com.avaloq.dice.app.repository.model;
+
+/**
+ * Totals of simulations of a single dice number and sides number pair, aggregated by the database
+ */
+public interface SimulationTotalsProjection {
+
+    Integer getDiceNo();
+
+    Integer getSidesNo();
+
+    Long getTotalSimulations();
+
+    Long getTotalRolls();
+}
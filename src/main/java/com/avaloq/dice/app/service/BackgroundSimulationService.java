@@ -0,0 +1,184 @@
+package com.avaloq.dice.app.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.SimulationCancelledException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.service.simulation.RollHistogram;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import com.avaloq.dice.app.service.simulation.SimulationProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs long simulations on a bounded pool of worker threads instead of request threads.
+ * Simulations are rolled in steps, progress is reported between steps and remaining steps are skipped once cancelled.
+ * Every step is admitted by {@link SimulationAdmission}, so background simulations share the compute budget with the others.
+ */
+@Service
+public class BackgroundSimulationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundSimulationService.class);
+
+    RollMultipleDiceService rollMultipleDiceService;
+    SimulationAdmission simulationAdmission;
+    int progressStep;
+    long progressIntervalNanos;
+    ThreadPoolExecutor executor;
+
+    public BackgroundSimulationService(RollMultipleDiceService rollMultipleDiceService,
+                                       SimulationAdmission simulationAdmission,
+                                       SimulationProperties properties) {
+        this.rollMultipleDiceService = rollMultipleDiceService;
+        this.simulationAdmission = simulationAdmission;
+        this.progressStep = properties.getProgressStep();
+        this.progressIntervalNanos = properties.getProgressInterval().toNanos();
+
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getWorkerThreads(), properties.getWorkerThreads(), 0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(properties.getWorkerQueueCapacity()),
+                                               task -> new Thread(task, "dice-simulation-worker-" + threads.incrementAndGet()));
+    }
+
+    /**
+     * Validates simulation input and starts the simulation in the background
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount
+     * @param seed optional seed
+     * @param progress observer of the simulation, notified from the worker thread
+     * @throws com.avaloq.dice.app.exception.DiceRollInputDataValidationException when input is improper, nothing is started
+     * @throws SimulationRejectedException when all workers are busy and no more simulations may wait
+     */
+    public void start(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed, SimulationProgress progress) {
+        rollMultipleDiceService.validateRollDice(numberOfDice, numberOfDiceSides, numberOfRolls);
+        try {
+            executor.execute(new SimulationTask(numberOfDice, numberOfDiceSides, numberOfRolls, seed, progress));
+        } catch (RejectedExecutionException e) {
+            throw new SimulationRejectedException();
+        }
+    }
+
+    /**
+     * Removes the simulation from the queue of waiting simulations, so it never takes a worker
+     * @param progress observer the simulation has been started with
+     * @return true if the simulation was still waiting
+     */
+    public boolean dequeue(SimulationProgress progress) {
+        return executor.getQueue().removeIf(task -> ((SimulationTask) task).progress == progress);
+    }
+
+    private void run(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed, SimulationProgress progress) {
+        final List<RollDice> result;
+        progress.onStart();
+        try {
+            result = rollMultipleDice(numberOfDice, numberOfDiceSides, numberOfRolls, seed, progress);
+        } catch (SimulationCancelledException e) {
+            progress.onFailure(e);
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Background simulation of {} dice with {} sides failed", numberOfDice, numberOfDiceSides, e);
+            progress.onFailure(e);
+            return;
+        }
+        progress.onResult(result);
+    }
+
+    /**
+     * Simulation rolled in steps of {@code dice.simulation.progress-step} rolls, each step with the cheapest kernel
+     * Every step is admitted separately, at its own cost
+     * Progress is reported after a step at most once per {@code dice.simulation.progress-interval}
+     * Steps of a seeded simulation are seeded from a generator of the given seed, so the result is reproducible
+     * Result is stored once all steps are rolled, through the same path as other simulations
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount
+     * @param seed optional seed
+     * @param progress observer of the simulation
+     * @return Simulation result, ordered by sum
+     * @throws SimulationCancelledException if cancelled before all rolls were simulated - nothing is stored
+     * @throws com.avaloq.dice.app.exception.SimulationOverloadedException when a step is shed by admission control - nothing is stored
+     */
+    List<RollDice> rollMultipleDice(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed, SimulationProgress progress) {
+        final SplittableRandom seeds = null != seed ? new SplittableRandom(seed) : null;
+        final boolean dense = RollHistogram.fits(numberOfDice, numberOfDiceSides);
+        final RollHistogram histogram = dense ? new RollHistogram(numberOfDice, numberOfDiceSides) : null;
+        final Map<Integer, Long> sparse = dense ? null : new TreeMap<>();
+
+        long reportedAt = System.nanoTime();
+        int rollsDone = 0;
+        while (rollsDone < numberOfRolls) {
+            if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+                throw new SimulationCancelledException();
+            }
+            final int step = Math.min(progressStep, numberOfRolls - rollsDone);
+            final Long stepSeed = null != seeds ? seeds.nextLong() : null;
+            final long cost = simulationAdmission.cost(numberOfDice, numberOfDiceSides, step, null != stepSeed);
+            if (dense) {
+                histogram.merge(simulationAdmission.admit(cost,
+                        () -> rollMultipleDiceService.simulate(numberOfDice, numberOfDiceSides, step, stepSeed)));
+            } else {
+                simulationAdmission.admit(cost, () -> rollMultipleDiceService.rollSparse(numberOfDice, numberOfDiceSides, step, stepSeed))
+                                   .forEach(r -> sparse.merge(r.getResult(), r.getAmount(), Long::sum));
+            }
+            rollsDone += step;
+
+            final long now = System.nanoTime();
+            if (rollsDone < numberOfRolls && now - reportedAt >= progressIntervalNanos) {
+                reportedAt = now;
+                progress.onProgress(rollsDone, () -> dense ? histogram.toRollDice() : toRollDice(sparse));
+            }
+        }
+
+        final List<RollDice> result = dense ? histogram.toRollDice() : toRollDice(sparse);
+        rollMultipleDiceService.saveRollDiceData(numberOfDice, numberOfDiceSides, result);
+        return result;
+    }
+
+    private static List<RollDice> toRollDice(Map<Integer, Long> amounts) {
+        return amounts.entrySet().stream()
+                      .map(e -> new RollDice(e.getKey(), e.getValue()))
+                      .collect(Collectors.toList());
+    }
+
+    private final class SimulationTask implements Runnable {
+
+        private final int numberOfDice;
+        private final int numberOfDiceSides;
+        private final int numberOfRolls;
+        private final Long seed;
+        private final SimulationProgress progress;
+
+        private SimulationTask(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed, SimulationProgress progress) {
+            this.numberOfDice = numberOfDice;
+            this.numberOfDiceSides = numberOfDiceSides;
+            this.numberOfRolls = numberOfRolls;
+            this.seed = seed;
+            this.progress = progress;
+        }
+
+        @Override
+        public void run() {
+            BackgroundSimulationService.this.run(numberOfDice, numberOfDiceSides, numberOfRolls, seed, progress);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
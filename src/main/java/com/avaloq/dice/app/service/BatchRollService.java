@@ -0,0 +1,138 @@
+package com.avaloq.dice.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.model.BatchRollResult;
+import com.avaloq.dice.app.model.RollConfiguration;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.service.simulation.ParallelRollSimulator;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Many simulations requested at once. Valid ones are simulated concurrently on the simulation fork/join pool
+ * and stored together, in transactions of at most {@code dice.persistence.write-behind-batch-size} simulations.
+ * Invalid and failed ones are reported without failing the whole batch.
+ */
+@Service
+public class BatchRollService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchRollService.class);
+
+    static final String MISSING_INPUT = "dice, sides and rolls are required";
+    static final String IMPROPER_INPUT = "dice and rolls have to be positive, sides at least 4";
+    static final String SIMULATION_FAILED = "simulation failed";
+
+    RollMultipleDiceService rollMultipleDiceService;
+    ParallelRollSimulator parallelRollSimulator;
+    SimulationAdmission simulationAdmission;
+    int batchMaxSize;
+    int storeBatchSize;
+
+    public BatchRollService(RollMultipleDiceService rollMultipleDiceService,
+                            ParallelRollSimulator parallelRollSimulator,
+                            SimulationAdmission simulationAdmission,
+                            SimulationProperties properties,
+                            PersistenceProperties persistenceProperties) {
+        this.rollMultipleDiceService = rollMultipleDiceService;
+        this.parallelRollSimulator = parallelRollSimulator;
+        this.simulationAdmission = simulationAdmission;
+        this.batchMaxSize = properties.getBatchMaxSize();
+        this.storeBatchSize = persistenceProperties.getWriteBehindBatchSize();
+    }
+
+    /**
+     * Simulates and stores all valid configurations
+     * Valid simulations are admitted by {@link SimulationAdmission} together, at the cost of all of them
+     * A simulation that fails is reported with an error, the other simulations are stored anyway
+     * @param configurations simulations input
+     * @return Outcome of every configuration, in the order of configurations
+     * @throws DiceRollInputDataValidationException when there are more than {@code dice.simulation.batch-max-size} configurations
+     * @throws com.avaloq.dice.app.exception.SimulationOverloadedException when shed by admission control
+     */
+    public List<BatchRollResult> rollBatch(List<RollConfiguration> configurations) {
+        if (configurations.size() > batchMaxSize) {
+            throw new DiceRollInputDataValidationException();
+        }
+
+        final String[] errors = new String[configurations.size()];
+        final List<Callable<List<RollDice>>> simulations = new ArrayList<>();
+        long cost = 0L;
+        for (int i = 0; i < configurations.size(); i++) {
+            final RollConfiguration configuration = configurations.get(i);
+            errors[i] = validate(configuration);
+            if (null == errors[i]) {
+                final long simulationCost = simulationAdmission.cost(configuration.getDiceNo(), configuration.getSidesNo(),
+                                                                     configuration.getRolls(), null != configuration.getSeed());
+                cost = cost > Long.MAX_VALUE - simulationCost ? Long.MAX_VALUE : cost + simulationCost;
+                simulations.add(() -> rollMultipleDiceService.roll(configuration.getDiceNo(), configuration.getSidesNo(),
+                                                                   configuration.getRolls(), configuration.getSeed()));
+            }
+        }
+
+        final List<Future<List<RollDice>>> rolled = simulations.isEmpty() ? new ArrayList<>()
+                : simulationAdmission.admit(cost, () -> parallelRollSimulator.invokeAll(simulations));
+
+        final List<BatchRollResult> results = new ArrayList<>(configurations.size());
+        final List<SimulationResult> stored = new ArrayList<>(rolled.size());
+        int next = 0;
+        for (int i = 0; i < configurations.size(); i++) {
+            final RollConfiguration configuration = configurations.get(i);
+            if (null != errors[i]) {
+                results.add(new BatchRollResult(configuration, null, errors[i]));
+                continue;
+            }
+            final List<RollDice> result = result(configuration, rolled.get(next++));
+            if (null == result) {
+                results.add(new BatchRollResult(configuration, null, SIMULATION_FAILED));
+                continue;
+            }
+            results.add(new BatchRollResult(configuration, result, null));
+            stored.add(new SimulationResult(configuration.getDiceNo(), configuration.getSidesNo(), result));
+        }
+
+        for (int from = 0; from < stored.size(); from += storeBatchSize) {
+            rollMultipleDiceService.saveAllRollDiceData(stored.subList(from, Math.min(from + storeBatchSize, stored.size())));
+        }
+        return results;
+    }
+
+    /**
+     * @return Result of the finished simulation, null if it has failed
+     */
+    private static List<RollDice> result(RollConfiguration configuration, Future<List<RollDice>> simulation) {
+        try {
+            return simulation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            log.warn("Batch simulation of {} dice with {} sides failed", configuration.getDiceNo(), configuration.getSidesNo(),
+                     e.getCause());
+            return null;
+        }
+    }
+
+    private String validate(RollConfiguration configuration) {
+        if (null == configuration || null == configuration.getDiceNo() || null == configuration.getSidesNo()
+                || null == configuration.getRolls()) {
+            return MISSING_INPUT;
+        }
+        try {
+            rollMultipleDiceService.validateRollDice(configuration.getDiceNo(), configuration.getSidesNo(), configuration.getRolls());
+            return null;
+        } catch (DiceRollInputDataValidationException e) {
+            return IMPROPER_INPUT;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.avaloq.dice.app.service;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.distribution.Convolutions;
+import com.avaloq.dice.app.service.simulation.RollHistogram;
+import org.springframework.stereotype.Service;
+
+/**
+ * Exact sum distributions kept in LRU cache bounded by the total amount of distribution columns,
+ * distributions too large to be worth keeping are computed on every request
+ */
+@Service
+public class ExactDistributionService {
+
+    private final long maxColumns;
+    private final int maxEntryColumns;
+
+    private final LinkedHashMap<Long, ExactDistribution> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long columns;
+
+    public ExactDistributionService(SimulationProperties simulationProperties) {
+        this.maxColumns = simulationProperties.getExactDistributionCacheMaxColumns();
+        this.maxEntryColumns = simulationProperties.getExactDistributionCacheMaxEntryColumns();
+    }
+
+    /**
+     * Exact distribution of a sum of dice, computed as the power of a single dice distribution polynomial
+     * Results of at most {@code dice.simulation.exact-distribution-cache-max-entry-columns} columns
+     * are kept in LRU cache keyed by dice number and sides number pair
+     * @param diceNo dice number
+     * @param sidesNo dice sides number
+     * @return Exact distribution
+     */
+    public ExactDistribution exactDistribution(int diceNo, int sidesNo) {
+        validateDistribution(diceNo, sidesNo);
+
+        final Long key = ((long) diceNo << 32) | sidesNo;
+        synchronized (cache) {
+            final ExactDistribution cached = cache.get(key);
+            if (null != cached) {
+                return cached;
+            }
+        }
+
+        final double[] singleDice = new double[sidesNo];
+        Arrays.fill(singleDice, 1.0 / sidesNo);
+        final ExactDistribution distribution =
+                ExactDistribution.of(diceNo, sidesNo, Convolutions.power(singleDice, diceNo));
+
+        if (distribution.size() > maxEntryColumns) {
+            return distribution;
+        }
+        synchronized (cache) {
+            final ExactDistribution concurrent = cache.putIfAbsent(key, distribution);
+            if (null != concurrent) {
+                return concurrent;
+            }
+            columns += distribution.size();
+            evict();
+        }
+        return distribution;
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Long, ExactDistribution>> eldest = cache.entrySet().iterator();
+        while (columns > maxColumns && eldest.hasNext()) {
+            columns -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+
+    private void validateDistribution(int diceNo, int sidesNo) {
+        if (diceNo <= 0 || sidesNo < 4 || !RollHistogram.fits(diceNo, sidesNo)) {
+            throw new DiceRollInputDataValidationException();
+        }
+    }
+}
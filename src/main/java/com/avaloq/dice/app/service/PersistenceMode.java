@@ -0,0 +1,22 @@
+package com.avaloq.dice.app.service;
+
+/**
+ * How simulation result items are written
+ */
+public enum PersistenceMode {
+
+    /**
+     * Items are cascaded from the simulation entity through the persistence context, in JDBC batches
+     */
+    JPA,
+
+    /**
+     * Items bypass the persistence context and are inserted with a single plain JDBC batch
+     */
+    JDBC,
+
+    /**
+     * Simulation histogram is stored in a single compact column of the simulation row, no items are written
+     */
+    COMPACT
+}
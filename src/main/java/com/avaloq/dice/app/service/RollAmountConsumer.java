@@ -0,0 +1,17 @@
+package com.avaloq.dice.app.service;
+
+import java.io.IOException;
+
+/**
+ * Receives simulation result sum by sum, straight from the counts - without a result object per sum
+ */
+@FunctionalInterface
+public interface RollAmountConsumer {
+
+    /**
+     * @param result total result
+     * @param amount amount of times given total was obtained in the simulation, never 0
+     * @throws IOException when the result cannot be written
+     */
+    void accept(int result, long amount) throws IOException;
+}
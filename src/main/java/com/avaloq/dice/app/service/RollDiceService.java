@@ -1,29 +1,151 @@
 package com.avaloq.dice.app.service;
 
-import java.util.Random;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.avaloq.dice.app.exception.DiceSidesAmountException;
+import com.avaloq.dice.app.service.random.BoundedRandoms;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.random.DiceRandomProvider;
+import com.avaloq.dice.app.service.simulation.DiceSumSampler;
+import com.avaloq.dice.app.service.simulation.PackedDiceSampler;
 import org.springframework.stereotype.Service;
 
 @Service
 public class RollDiceService {
 
-    private Random random = new Random();
+    /**
+     * Packed samplers kept for recently rolled dice - partial sums table is at most 16 kB, so the cache stays within 1 MB
+     */
+    static final int PACKED_SAMPLERS_CACHE_SIZE = 64;
+
+    private DiceRandomProvider randomProvider;
+
+    private final Map<Long, PackedDiceSampler> packedSamplers =
+            new LinkedHashMap<Long, PackedDiceSampler>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, PackedDiceSampler> eldest) {
+                    return size() > PACKED_SAMPLERS_CACHE_SIZE;
+                }
+            };
+
+    public RollDiceService(DiceRandomProvider randomProvider) {
+        this.randomProvider = randomProvider;
+    }
 
     /**
-     * Roll a single dice
+     * Roll a single dice with generator of the current thread
      * @param sides Amount of dice sides (at least 4)
      * @return Roll result
      */
     public int rollDice(int sides) {
-        if (sides <= 3) {
-            throw new DiceSidesAmountException();
+        validateSides(sides);
+        return 1 + BoundedRandoms.nextInt(randomProvider.current(), sides);
+    }
+
+    /**
+     * Roll multiple dice at once, sides amount is validated once for the whole batch
+     * @param sides Amount of dice sides (at least 4)
+     * @param count Amount of dice to roll
+     * @param out Array where roll results are stored, starting from index 0
+     */
+    public void rollInto(int sides, int count, int[] out) {
+        rollInto(sides, count, out, randomProvider.current());
+    }
+
+    /**
+     * Roll multiple dice at once using provided generator
+     * @param sides Amount of dice sides (at least 4)
+     * @param count Amount of dice to roll
+     * @param out Array where roll results are stored, starting from index 0
+     * @param random generator owned by the caller
+     */
+    public void rollInto(int sides, int count, int[] out, DiceRandom random) {
+        validateSides(sides);
+        for (int i = 0; i < count; i++) {
+            out[i] = 1 + BoundedRandoms.nextInt(random, sides);
+        }
+    }
+
+    /**
+     * Roll multiple dice and sum their results
+     * @param sides Amount of dice sides (at least 4)
+     * @param count Amount of dice to roll
+     * @return Sum of roll results
+     */
+    public int sumOfDice(int sides, int count) {
+        return sumOfDice(sides, count, randomProvider.current());
+    }
+
+    /**
+     * Roll multiple dice using provided generator and sum their results
+     * @param sides Amount of dice sides (at least 4)
+     * @param count Amount of dice to roll
+     * @param random generator owned by the caller
+     * @return Sum of roll results
+     */
+    public int sumOfDice(int sides, int count, DiceRandom random) {
+        validateSides(sides);
+        int sum = count;
+        for (int i = 0; i < count; i++) {
+            sum += BoundedRandoms.nextInt(random, sides);
+        }
+        return sum;
+    }
+
+    /**
+     * Sampler of a single roll sum of given dice, several dice are rolled with a single draw when possible
+     * @param sides Amount of dice sides (at least 4)
+     * @param count Amount of dice rolled at once
+     * @return Sampler which may be shared between threads
+     */
+    public DiceSumSampler sumSampler(int sides, int count) {
+        return sumSampler(sides, count, PackedDiceSampler.supports(count, sides));
+    }
+
+    /**
+     * Sampler of a single roll sum of given dice
+     * @param sides Amount of dice sides (at least 4)
+     * @param count Amount of dice rolled at once
+     * @param packed true if several dice should be rolled with a single draw, must be supported for given dice
+     * @return Sampler which may be shared between threads
+     */
+    public DiceSumSampler sumSampler(int sides, int count, boolean packed) {
+        validateSides(sides);
+        if (packed) {
+            return packedSampler(sides, count);
+        }
+        return random -> sumOfDice(sides, count, random);
+    }
+
+    /**
+     * Packed sampler is immutable, so it is built once per dice number and sides number pair and shared
+     */
+    private PackedDiceSampler packedSampler(int sides, int count) {
+        final Long key = ((long) count << 32) | sides;
+        synchronized (packedSamplers) {
+            return packedSamplers.computeIfAbsent(key, k -> new PackedDiceSampler(count, sides));
         }
-        int result = random.nextInt(sides);
+    }
+
+    /**
+     * @return generator owned by the current thread
+     */
+    public DiceRandom currentRandom() {
+        return randomProvider.current();
+    }
 
-        while (result == 0) {
-            result = random.nextInt(sides);
+    /**
+     * @param seed generator seed
+     * @return new generator of configured type, owned by the caller
+     */
+    public DiceRandom createRandom(long seed) {
+        return randomProvider.create(seed);
+    }
+
+    private void validateSides(int sides) {
+        if (sides <= 3) {
+            throw new DiceSidesAmountException();
         }
-        return result;
     }
 }
@@ -0,0 +1,297 @@
+package com.avaloq.dice.app.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.RollDiceItemJdbcRepository;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.PairResultAmountProjection;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateId;
+import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
+import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.repository.model.SimulationRowProjection;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.StatisticsAggregation;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Stores simulations together with aggregates of their dice number and sides number pair
+ */
+@Service
+public class RollDiceStorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(RollDiceStorageService.class);
+
+    RollDiceRepository rollDiceRepository;
+    RollDiceAggregateRepository rollDiceAggregateRepository;
+    RollDiceItemRepository rollDiceItemRepository;
+    RollDiceItemJdbcRepository rollDiceItemJdbcRepository;
+    TotalRollsCounter totalRollsCounter;
+    LiveStatisticsStore liveStatisticsStore;
+    StatisticsAggregation aggregation;
+    PersistenceMode persistenceMode;
+
+    public RollDiceStorageService(RollDiceRepository rollDiceRepository,
+                                  RollDiceAggregateRepository rollDiceAggregateRepository,
+                                  RollDiceItemRepository rollDiceItemRepository,
+                                  RollDiceItemJdbcRepository rollDiceItemJdbcRepository,
+                                  TotalRollsCounter totalRollsCounter,
+                                  LiveStatisticsStore liveStatisticsStore,
+                                  StatisticsProperties statisticsProperties,
+                                  PersistenceProperties persistenceProperties) {
+        this.rollDiceRepository = rollDiceRepository;
+        this.rollDiceAggregateRepository = rollDiceAggregateRepository;
+        this.rollDiceItemRepository = rollDiceItemRepository;
+        this.rollDiceItemJdbcRepository = rollDiceItemJdbcRepository;
+        this.totalRollsCounter = totalRollsCounter;
+        this.liveStatisticsStore = liveStatisticsStore;
+        this.aggregation = statisticsProperties.getAggregation();
+        this.persistenceMode = persistenceProperties.getMode();
+    }
+
+    /**
+     * Saves simulation and adds it to the aggregate of its pair in a single transaction
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides sides number
+     * @param rollDiceResults Simulations result
+     */
+    @Transactional
+    public void save(int numberOfDice, int numberOfDiceSides, List<RollDice> rollDiceResults) {
+        saveAll(Collections.singletonList(new SimulationResult(numberOfDice, numberOfDiceSides, rollDiceResults)));
+    }
+
+    /**
+     * Saves simulations and adds them to the aggregates of their pairs in a single transaction
+     * In {@link PersistenceMode#JDBC} mode items of all simulations are inserted with a single JDBC batch instead of being cascaded
+     * Aggregates are locked once per pair, always in the same order, so concurrent batches do not deadlock
+     * Simulations are added to total rolls counter and live statistics when the transaction commits
+     * @param simulations Simulations results
+     */
+    @Transactional
+    public void saveAll(List<SimulationResult> simulations) {
+        final List<RollDiceResultEntity> samples = simulations.stream()
+                                                              .map(this::store)
+                                                              .collect(Collectors.toList());
+        if (persistenceMode == PersistenceMode.JDBC) {
+            rollDiceRepository.flush();
+            rollDiceItemJdbcRepository.insert(samples.stream().map(RollDiceResultEntity::getId).collect(Collectors.toList()),
+                                              simulations.stream().map(SimulationResult::getResults).collect(Collectors.toList()));
+        }
+
+        final Map<RollDiceAggregateId, List<SimulationResult>> pairs = new TreeMap<>(
+                Comparator.comparing(RollDiceAggregateId::getDiceNo).thenComparing(RollDiceAggregateId::getSidesNo));
+        simulations.forEach(s -> pairs.computeIfAbsent(new RollDiceAggregateId(s.getDiceNo(), s.getSidesNo()),
+                                                       id -> new ArrayList<>()).add(s));
+        pairs.forEach((pair, pairSimulations) -> {
+            final RollDiceAggregateEntity aggregate =
+                    rollDiceAggregateRepository.findForUpdate(pair.getDiceNo(), pair.getSidesNo())
+                                               .orElseGet(() -> emptyAggregate(pair.getDiceNo(), pair.getSidesNo()));
+            for (SimulationResult simulation : pairSimulations) {
+                aggregate.setTotalSimulations(aggregate.getTotalSimulations() + 1);
+                simulation.getResults().forEach(r -> addRolls(aggregate, r.getResult(), r.getAmount()));
+            }
+            rollDiceAggregateRepository.save(aggregate);
+        });
+
+        totalRollsCounter.add(simulations.stream()
+                                         .flatMap(s -> s.getResults().stream())
+                                         .mapToLong(RollDice::getAmount)
+                                         .sum());
+        simulations.forEach(s -> liveStatisticsStore.add(s.getDiceNo(), s.getSidesNo(), s.getResults()));
+    }
+
+    private RollDiceResultEntity store(SimulationResult simulation) {
+        RollDiceResultEntity sample = new RollDiceResultEntity();
+
+        sample.setDiceNo(simulation.getDiceNo());
+        sample.setSidesNo(simulation.getSidesNo());
+
+        if (persistenceMode == PersistenceMode.JDBC) {
+            sample.setResultItems(new HashSet<>());
+        } else if (persistenceMode == PersistenceMode.COMPACT) {
+            sample.setResultItems(new HashSet<>());
+            sample.setHistogram(histogram(simulation.getResults()));
+            sample.setRolls(simulation.getResults().stream().mapToLong(RollDice::getAmount).sum());
+        } else {
+            sample.setResultItems(simulation.getResults().stream()
+                            .map(r -> new RollDiceResultItemEntity(null, sample, r.getResult(), r.getAmount()))
+                            .collect(Collectors.toCollection(() -> new HashSet<RollDiceResultItemEntity>())));
+        }
+
+        rollDiceRepository.save(sample);
+        return sample;
+    }
+
+    /**
+     * Converts simulations stored as result items into compact histograms, oldest first
+     * Neither simulations nor items are loaded as entities, items are deleted by a single bulk delete
+     * @param limit maximum amount of simulations converted in the transaction
+     * @return Amount of converted simulations, 0 if there are no simulations stored as result items left
+     */
+    @Transactional
+    public int compactItems(int limit) {
+        final List<Long> ids = rollDiceRepository.findIdsStoredAsItems(PageRequest.of(0, limit));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        final Map<Long, Map<Integer, Long>> histograms = new HashMap<>();
+        rollDiceItemRepository.findAmountsByRollDiceResultIdIn(ids)
+                              .forEach(i -> histograms.computeIfAbsent(i.getSimulationId(), id -> new TreeMap<>())
+                                                      .merge(i.getResult(), i.getAmount(), Long::sum));
+
+        rollDiceItemRepository.deleteByRollDiceResultIdIn(ids);
+        histograms.forEach((id, histogram) ->
+                rollDiceRepository.updateHistogram(id, histogram, histogram.values().stream().mapToLong(Long::longValue).sum()));
+        return ids.size();
+    }
+
+    /**
+     * Merges oldest simulations of given pair into the oldest one, which becomes a compact histogram
+     * with the amount of merged simulations. Other merged simulations are deleted.
+     * Aggregates are not affected, so concurrently saved simulations are not blocked.
+     * Neither simulations nor items are loaded as entities, they are merged by aggregate queries and bulk deletes.
+     * @param diceNo dice number
+     * @param sidesNo sides number
+     * @param maxId only simulations up to this id are merged
+     * @param limit maximum amount of simulations merged in the transaction, including the oldest one
+     * @return Amount of deleted simulations, 0 if there is nothing left to merge
+     */
+    @Transactional
+    public int compactPair(int diceNo, int sidesNo, long maxId, int limit) {
+        final List<Long> ids = rollDiceRepository.findIdsToCompact(diceNo, sidesNo, maxId, PageRequest.of(0, limit));
+        if (ids.size() < 2) {
+            return 0;
+        }
+        final long target = ids.get(0);
+        final List<Long> merged = ids.subList(1, ids.size());
+
+        final Map<Integer, Long> histogram = new TreeMap<>();
+        rollDiceItemRepository.sumAmountsByResultIn(ids).forEach(a -> histogram.merge(a.getResult(), a.getAmount(), Long::sum));
+        rollDiceRepository.findHistogramsByIdIn(ids).forEach(h -> h.forEach((result, amount) -> histogram.merge(result, amount, Long::sum)));
+        final long simulations = rollDiceRepository.sumSimulationsByIdIn(ids);
+
+        rollDiceItemRepository.deleteByRollDiceResultIdIn(ids);
+        rollDiceRepository.deleteByIdIn(merged);
+        rollDiceRepository.updateHistogram(target, histogram, histogram.values().stream().mapToLong(Long::longValue).sum(), simulations);
+        return merged.size();
+    }
+
+    /**
+     * Builds aggregates from already stored simulations, if they were stored before aggregates were introduced
+     * Runs before live statistics are warmed from aggregates
+     */
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebuildAggregates() {
+        if (rollDiceAggregateRepository.count() > 0 || rollDiceRepository.count() == 0) {
+            return;
+        }
+        final List<RollDiceAggregateEntity> aggregates = aggregation == StatisticsAggregation.DATABASE
+                                                          ? aggregateInDatabase()
+                                                          : aggregateStreamed();
+        rollDiceAggregateRepository.saveAll(aggregates);
+        log.info("Rebuilt {} simulation aggregates", aggregates.size());
+    }
+
+    /**
+     * @param simulations stored simulations
+     * @return Aggregates of given simulations, one per dice number and sides number pair
+     */
+    List<RollDiceAggregateEntity> aggregate(Collection<RollDiceResultEntity> simulations) {
+        final Map<RollDiceAggregateId, RollDiceAggregateEntity> aggregates = new LinkedHashMap<>();
+        simulations.forEach(s -> add(aggregates.computeIfAbsent(new RollDiceAggregateId(s.getDiceNo(), s.getSidesNo()),
+                                                                id -> emptyAggregate(id.getDiceNo(), id.getSidesNo())),
+                                     s));
+        return new ArrayList<>(aggregates.values());
+    }
+
+    /**
+     * Aggregates are folded from streamed flat rows of simulations and items, so neither simulations nor items
+     * are held in memory - memory does not grow with the amount of stored simulations
+     * @return Aggregates of all stored simulations, must be called in a transaction
+     */
+    List<RollDiceAggregateEntity> aggregateStreamed() {
+        final Map<RollDiceAggregateId, RollDiceAggregateEntity> aggregates = new LinkedHashMap<>();
+        try (Stream<SimulationRowProjection> simulations = rollDiceRepository.streamAll()) {
+            simulations.forEach(s -> {
+                final RollDiceAggregateEntity aggregate = aggregates.computeIfAbsent(new RollDiceAggregateId(s.getDiceNo(), s.getSidesNo()),
+                                                                                     id -> emptyAggregate(id.getDiceNo(), id.getSidesNo()));
+                aggregate.setTotalSimulations(aggregate.getTotalSimulations() + s.getSimulations());
+                if (null != s.getHistogram()) {
+                    s.getHistogram().forEach((result, amount) -> addRolls(aggregate, result, amount));
+                }
+            });
+        }
+        try (Stream<PairResultAmountProjection> items = rollDiceItemRepository.streamAll()) {
+            items.forEach(i -> addRolls(aggregates.get(new RollDiceAggregateId(i.getDiceNo(), i.getSidesNo())), i.getResult(), i.getAmount()));
+        }
+        return new ArrayList<>(aggregates.values());
+    }
+
+    /**
+     * @return Aggregates of all stored simulations, aggregated by the database - only aggregated rows are read
+     */
+    List<RollDiceAggregateEntity> aggregateInDatabase() {
+        final Map<RollDiceAggregateId, RollDiceAggregateEntity> aggregates = new LinkedHashMap<>();
+        rollDiceRepository.aggregateTotals().forEach(t -> aggregates.put(
+                new RollDiceAggregateId(t.getDiceNo(), t.getSidesNo()),
+                new RollDiceAggregateEntity(t.getDiceNo(), t.getSidesNo(), t.getTotalSimulations(), t.getTotalRolls(), new HashMap<>())));
+        rollDiceRepository.aggregateResultAmounts().forEach(a -> addRolls(aggregates.get(new RollDiceAggregateId(a.getDiceNo(), a.getSidesNo())),
+                                                                          a.getResult(), a.getAmount()));
+        // compact histograms can not be aggregated by the database, their total rolls are already counted
+        rollDiceRepository.findPairHistograms().forEach(h -> h.getHistogram().forEach(
+                (result, amount) -> aggregates.get(new RollDiceAggregateId(h.getDiceNo(), h.getSidesNo()))
+                                              .getResultAmounts().merge(result, amount, Long::sum)));
+        return new ArrayList<>(aggregates.values());
+    }
+
+    private static RollDiceAggregateEntity emptyAggregate(int numberOfDice, int numberOfDiceSides) {
+        return new RollDiceAggregateEntity(numberOfDice, numberOfDiceSides, 0L, 0L, new HashMap<>());
+    }
+
+    private static void add(RollDiceAggregateEntity aggregate, RollDiceResultEntity simulation) {
+        aggregate.setTotalSimulations(aggregate.getTotalSimulations() + simulation.getSimulations());
+        simulation.getResultItems().forEach(i -> addRolls(aggregate, i.getResult(), i.getAmount()));
+        if (null != simulation.getHistogram()) {
+            simulation.getHistogram().forEach((result, amount) -> addRolls(aggregate, result, amount));
+        }
+    }
+
+    private static Map<Integer, Long> histogram(List<RollDice> rollDiceResults) {
+        final Map<Integer, Long> histogram = new TreeMap<>();
+        rollDiceResults.forEach(r -> histogram.merge(r.getResult(), r.getAmount(), Long::sum));
+        return histogram;
+    }
+
+    private static void addRolls(RollDiceAggregateEntity aggregate, int result, long amount) {
+        aggregate.setTotalRolls(aggregate.getTotalRolls() + amount);
+        aggregate.getResultAmounts().merge(result, amount, Long::sum);
+    }
+}
@@ -1,16 +1,27 @@
 package com.avaloq.dice.app.service;
 
-import java.util.HashSet;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
 import com.avaloq.dice.app.model.RollDice;
-import com.avaloq.dice.app.repository.RollDiceRepository;
-import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
-import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.service.persistence.SimulationWriteBehind;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.simulation.AliasTableCache;
+import com.avaloq.dice.app.service.simulation.DiceSumSampler;
+import com.avaloq.dice.app.service.simulation.MultinomialRollSimulator;
+import com.avaloq.dice.app.service.simulation.ParallelRollSimulator;
+import com.avaloq.dice.app.service.simulation.RollHistogram;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import com.avaloq.dice.app.service.simulation.SimulationPlan;
+import com.avaloq.dice.app.service.simulation.SimulationStrategy;
+import com.avaloq.dice.app.service.simulation.SimulationStrategySelector;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -18,12 +29,36 @@ public class RollMultipleDiceService {
 
     RollDiceService rollDiceService;
 
-    RollDiceRepository rollDiceRepository;
+    RollDiceStorageService rollDiceStorageService;
+
+    SimulationStrategySelector simulationStrategySelector;
+
+    ParallelRollSimulator parallelRollSimulator;
+
+    MultinomialRollSimulator multinomialRollSimulator;
+
+    AliasTableCache aliasTableCache;
+
+    SimulationWriteBehind simulationWriteBehind;
+
+    SimulationAdmission simulationAdmission;
 
     public RollMultipleDiceService(RollDiceService rollDiceService,
-                                   RollDiceRepository rollDiceRepository) {
+                                   RollDiceStorageService rollDiceStorageService,
+                                   SimulationStrategySelector simulationStrategySelector,
+                                   ParallelRollSimulator parallelRollSimulator,
+                                   MultinomialRollSimulator multinomialRollSimulator,
+                                   AliasTableCache aliasTableCache,
+                                   SimulationWriteBehind simulationWriteBehind,
+                                   SimulationAdmission simulationAdmission) {
         this.rollDiceService = rollDiceService;
-        this.rollDiceRepository = rollDiceRepository;
+        this.rollDiceStorageService = rollDiceStorageService;
+        this.simulationStrategySelector = simulationStrategySelector;
+        this.parallelRollSimulator = parallelRollSimulator;
+        this.multinomialRollSimulator = multinomialRollSimulator;
+        this.aliasTableCache = aliasTableCache;
+        this.simulationWriteBehind = simulationWriteBehind;
+        this.simulationAdmission = simulationAdmission;
     }
 
     /**
@@ -34,21 +69,190 @@ public class RollMultipleDiceService {
      * @return
      */
     public List<RollDice> rollMultipleDice(int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        return rollMultipleDice(numberOfDice, numberOfDiceSides, numberOfRolls, null);
+    }
+
+    /**
+     * Simulation of roll dice which has sides defined amount of times
+     * Simulation kernel is selected by {@link SimulationStrategySelector}
+     * Simulation is run once admitted by {@link SimulationAdmission}, storing it does not count against the compute budget
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount - how many times multiple dice will be rolled
+     * @param seed optional seed - when provided, simulation result is reproducible regardless of cores amount
+     * @return
+     * @throws com.avaloq.dice.app.exception.SimulationOverloadedException when shed by admission control
+     */
+    public List<RollDice> rollMultipleDice(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed) {
         validateRollDice(numberOfDice, numberOfDiceSides, numberOfRolls);
 
-        List<RollDice> result = IntStream.range(0, numberOfRolls)
-                                            .boxed()
-                                            .map(i -> singleRollDice(numberOfDice, numberOfDiceSides))
-                                            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-                                            .entrySet().stream()
-                                            .map(e -> new RollDice(e.getKey(), e.getValue()))
-                                            .collect(Collectors.toList());
+        final List<RollDice> result = simulationAdmission.admit(
+                simulationAdmission.cost(numberOfDice, numberOfDiceSides, numberOfRolls, null != seed),
+                () -> roll(numberOfDice, numberOfDiceSides, numberOfRolls, seed));
 
         saveRollDiceData(numberOfDice, numberOfDiceSides, result);
 
         return result;
     }
 
+    /**
+     * Simulation of roll dice passed to the consumer sum by sum, ordered by sum when the sum range fits a dense histogram
+     * Dense results are passed straight from the histogram counts, result list is built only to store the simulation
+     * Simulation is stored once all sums have been passed, also when the consumer fails
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount - how many times multiple dice will be rolled
+     * @param seed optional seed
+     * @param consumer receiver of the result
+     * @throws IOException when thrown by the consumer
+     * @throws com.avaloq.dice.app.exception.SimulationOverloadedException when shed by admission control
+     */
+    public void rollMultipleDice(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed,
+                                 RollAmountConsumer consumer) throws IOException {
+        validateRollDice(numberOfDice, numberOfDiceSides, numberOfRolls);
+        final long cost = simulationAdmission.cost(numberOfDice, numberOfDiceSides, numberOfRolls, null != seed);
+
+        if (RollHistogram.fits(numberOfDice, numberOfDiceSides)) {
+            final RollHistogram histogram = simulationAdmission.admit(cost,
+                    () -> simulate(numberOfDice, numberOfDiceSides, numberOfRolls, seed));
+            try {
+                for (int sum = histogram.getMinSum(); sum <= histogram.getMaxSum(); sum++) {
+                    final long amount = histogram.getAmount(sum);
+                    if (amount != 0L) {
+                        consumer.accept(sum, amount);
+                    }
+                }
+            } finally {
+                saveRollDiceData(numberOfDice, numberOfDiceSides, histogram.toRollDice());
+            }
+            return;
+        }
+
+        final List<RollDice> result = simulationAdmission.admit(cost,
+                () -> rollSparse(numberOfDice, numberOfDiceSides, numberOfRolls, seed));
+        try {
+            for (RollDice rollDice : result) {
+                consumer.accept(rollDice.getResult(), rollDice.getAmount());
+            }
+        } finally {
+            saveRollDiceData(numberOfDice, numberOfDiceSides, result);
+        }
+    }
+
+    /**
+     * Simulation of validated input, not stored
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount
+     * @param seed optional seed
+     * @return Simulation result
+     */
+    List<RollDice> roll(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed) {
+        return RollHistogram.fits(numberOfDice, numberOfDiceSides)
+                   ? simulate(numberOfDice, numberOfDiceSides, numberOfRolls, seed).toRollDice()
+                   : rollSparse(numberOfDice, numberOfDiceSides, numberOfRolls, seed);
+    }
+
+    /**
+     * Simulation with the cheapest kernel, counted into a dense histogram
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seed optional seed
+     * @return Simulation histogram
+     */
+    RollHistogram simulate(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed) {
+        final SimulationPlan plan = simulationStrategySelector.select(numberOfDice, numberOfDiceSides, numberOfRolls, null != seed);
+        final long start = System.nanoTime();
+
+        final RollHistogram histogram;
+        if (plan.getStrategy() == SimulationStrategy.MULTINOMIAL) {
+            final DiceRandom random = null != seed ? rollDiceService.createRandom(seed) : rollDiceService.currentRandom();
+            histogram = multinomialRollSimulator.simulate(numberOfDice, numberOfDiceSides, numberOfRolls, random);
+        } else if (null != seed || plan.isParallel()) {
+            histogram = rollChunked(sumSampler(plan.getStrategy(), numberOfDice, numberOfDiceSides),
+                                    numberOfDice, numberOfDiceSides, numberOfRolls, seed, plan.isParallel());
+        } else {
+            histogram = rollHistogram(sumSampler(plan.getStrategy(), numberOfDice, numberOfDiceSides),
+                                      numberOfDice, numberOfDiceSides, numberOfRolls);
+        }
+
+        simulationStrategySelector.record(plan, System.nanoTime() - start);
+        return histogram;
+    }
+
+    /**
+     * Simulation counted into a dense histogram - no allocation per roll
+     * @param sampler single roll sampler
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @return Simulation histogram
+     */
+    RollHistogram rollHistogram(DiceSumSampler sampler, int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        final DiceRandom random = rollDiceService.currentRandom();
+        RollHistogram histogram = new RollHistogram(numberOfDice, numberOfDiceSides);
+        for (int i = 0; i < numberOfRolls; i++) {
+            histogram.add(sampler.sample(random));
+        }
+        return histogram;
+    }
+
+    /**
+     * Simulation split into chunks, each rolled with its own generator split
+     * @param sampler single roll sampler
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seed optional seed, random one is used when not provided
+     * @param parallel true if chunks should be rolled in parallel
+     * @return Simulation histogram
+     */
+    RollHistogram rollChunked(DiceSumSampler sampler, int numberOfDice, int numberOfDiceSides, int numberOfRolls,
+                              Long seed, boolean parallel) {
+        final long rootSeed = null != seed ? seed : ThreadLocalRandom.current().nextLong();
+        return parallelRollSimulator.simulate(numberOfDice, numberOfDiceSides, numberOfRolls, rootSeed, parallel,
+                (histogram, rolls, random) -> {
+                    for (int i = 0; i < rolls; i++) {
+                        histogram.add(sampler.sample(random));
+                    }
+                });
+    }
+
+    /**
+     * Sampler of a single roll sum for selected kernel
+     * @param strategy selected kernel, other than {@link SimulationStrategy#MULTINOMIAL}
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return Sampler shared by all rolls of the simulation
+     */
+    DiceSumSampler sumSampler(SimulationStrategy strategy, int numberOfDice, int numberOfDiceSides) {
+        if (strategy == SimulationStrategy.ALIAS) {
+            return aliasTableCache.sampler(numberOfDice, numberOfDiceSides);
+        }
+        return rollDiceService.sumSampler(numberOfDiceSides, numberOfDice, strategy == SimulationStrategy.PACKED);
+    }
+
+    /**
+     * Simulation for configurations which sum range is too wide for a dense histogram
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seed optional seed
+     * @return Simulation result
+     */
+    List<RollDice> rollSparse(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed) {
+        final DiceRandom random = null != seed ? rollDiceService.createRandom(seed) : rollDiceService.currentRandom();
+        final DiceSumSampler sampler = rollDiceService.sumSampler(numberOfDiceSides, numberOfDice);
+        return IntStream.range(0, numberOfRolls)
+                        .boxed()
+                        .map(i -> sampler.sample(random))
+                        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                        .entrySet().stream()
+                        .map(e -> new RollDice(e.getKey(), e.getValue()))
+                        .collect(Collectors.toList());
+    }
+
     /**
      * Single roll of amount of dice provided in input parameter
      * @param numberOfDice dice number
@@ -56,32 +260,62 @@ public class RollMultipleDiceService {
      * @return
      */
     int singleRollDice(int numberOfDice, int numberOfDiceSides) {
-        return IntStream.range(0, numberOfDice)
-                .map(i -> rollDiceService.rollDice(numberOfDiceSides))
-                .sum();
+        return singleRollDice(numberOfDice, numberOfDiceSides, rollDiceService.currentRandom());
+    }
+
+    /**
+     * Single roll of amount of dice provided in input parameter using given generator
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param random generator owned by the caller
+     * @return
+     */
+    int singleRollDice(int numberOfDice, int numberOfDiceSides, DiceRandom random) {
+        return rollDiceService.sumSampler(numberOfDiceSides, numberOfDice).sample(random);
     }
 
     /**
      * Save Simulation Data to DB
+     * With write-behind enabled simulation is only queued and stored in the background, unless the queue is full
+     * Save is retried once if aggregate of the pair has been created by a concurrent simulation in the meantime
      * @param numberOfDice dice number
      * @param numberOfDiceSides sides number
      * @param rollDiceResults Simulations result
      */
-    void saveRollDiceData(int numberOfDice, int numberOfDiceSides, List<RollDice> rollDiceResults) {
-        RollDiceResultEntity sample = new RollDiceResultEntity();
-
-        sample.setDiceNo(numberOfDice);
-        sample.setSidesNo(numberOfDiceSides);
-
-        sample.setResultItems(rollDiceResults.stream()
-                        .map(r -> new RollDiceResultItemEntity(null, sample, r.getResult(), r.getAmount()))
-                        .collect(Collectors.toCollection(() -> new HashSet<RollDiceResultItemEntity>())));
-
+    public void saveRollDiceData(int numberOfDice, int numberOfDiceSides, List<RollDice> rollDiceResults) {
+        if (simulationWriteBehind.submit(new SimulationResult(numberOfDice, numberOfDiceSides, rollDiceResults))) {
+            return;
+        }
+        try {
+            rollDiceStorageService.save(numberOfDice, numberOfDiceSides, rollDiceResults);
+        } catch (DataIntegrityViolationException e) {
+            rollDiceStorageService.save(numberOfDice, numberOfDiceSides, rollDiceResults);
+        }
+    }
 
-        rollDiceRepository.save(sample);
+    /**
+     * Save Simulations Data to DB in a single transaction, bypassing write-behind - simulations are batched already
+     * Save is retried once if aggregate of a pair has been created by a concurrent simulation in the meantime
+     * @param simulations Simulations results
+     */
+    public void saveAllRollDiceData(List<SimulationResult> simulations) {
+        if (simulations.isEmpty()) {
+            return;
+        }
+        try {
+            rollDiceStorageService.saveAll(simulations);
+        } catch (DataIntegrityViolationException e) {
+            rollDiceStorageService.saveAll(simulations);
+        }
     }
 
-    private void validateRollDice(int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+    /**
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount
+     * @throws DiceRollInputDataValidationException when input is improper
+     */
+    public void validateRollDice(int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
         if (numberOfRolls <= 0 || numberOfDice <= 0 || numberOfDiceSides < 4) {
             throw new DiceRollInputDataValidationException();
         }
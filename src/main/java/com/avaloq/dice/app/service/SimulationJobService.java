@@ -0,0 +1,101 @@
+package com.avaloq.dice.app.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.SimulationJobNotFoundException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import com.avaloq.dice.app.service.simulation.SimulationJob;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Service;
+
+/**
+ * Simulation jobs run by {@link BackgroundSimulationService} workers and polled by their id,
+ * so request threads are not held for the simulation duration.
+ * Jobs are kept in memory, at most {@code dice.simulation.job-max-retained} of them, finished ones for {@code dice.simulation.job-retention}.
+ * Expired jobs are removed every {@code dice.simulation.job-sweep-interval}.
+ */
+@Service
+public class SimulationJobService implements SchedulingConfigurer {
+
+    BackgroundSimulationService backgroundSimulationService;
+    long retentionNanos;
+    int maxRetained;
+    Duration sweepInterval;
+    Map<UUID, SimulationJob> jobs = new ConcurrentHashMap<>();
+
+    public SimulationJobService(BackgroundSimulationService backgroundSimulationService, SimulationProperties properties) {
+        this.backgroundSimulationService = backgroundSimulationService;
+        this.retentionNanos = properties.getJobRetention().toNanos();
+        this.maxRetained = properties.getJobMaxRetained();
+        this.sweepInterval = properties.getJobSweepInterval();
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.addFixedDelayTask(new IntervalTask(this::removeExpired, sweepInterval.toMillis(), sweepInterval.toMillis()));
+    }
+
+    /**
+     * Validates simulation input and submits the simulation job
+     * @param numberOfDice dice amount
+     * @param numberOfDiceSides single dice amount
+     * @param numberOfRolls Simulations amount
+     * @param seed optional seed
+     * @return Submitted job
+     * @throws com.avaloq.dice.app.exception.DiceRollInputDataValidationException when input is improper, no job is submitted
+     * @throws SimulationRejectedException when {@code dice.simulation.job-max-retained} jobs are kept already,
+     *         or all workers are busy and no more simulations may wait
+     */
+    public synchronized SimulationJob submit(int numberOfDice, int numberOfDiceSides, int numberOfRolls, Long seed) {
+        removeExpired();
+        if (jobs.size() >= maxRetained) {
+            throw new SimulationRejectedException();
+        }
+        final SimulationJob job = new SimulationJob(UUID.randomUUID(), numberOfDice, numberOfDiceSides, numberOfRolls);
+        jobs.put(job.getId(), job);
+        try {
+            backgroundSimulationService.start(numberOfDice, numberOfDiceSides, numberOfRolls, seed, job);
+        } catch (RuntimeException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * @param id job id
+     * @return Job of the given id
+     * @throws SimulationJobNotFoundException when there is no such job
+     */
+    public SimulationJob find(UUID id) {
+        final SimulationJob job = jobs.get(id);
+        if (null == job || job.isExpired(System.nanoTime(), retentionNanos)) {
+            throw new SimulationJobNotFoundException();
+        }
+        return job;
+    }
+
+    /**
+     * Cancels the job, see {@link SimulationJob#cancel()} - a queued job is removed from the workers queue as well
+     * @param id job id
+     * @return Cancelled job
+     * @throws SimulationJobNotFoundException when there is no such job
+     */
+    public SimulationJob cancel(UUID id) {
+        final SimulationJob job = find(id);
+        job.cancel();
+        backgroundSimulationService.dequeue(job);
+        return job;
+    }
+
+    void removeExpired() {
+        final long now = System.nanoTime();
+        jobs.values().removeIf(job -> job.isExpired(now, retentionNanos));
+    }
+}
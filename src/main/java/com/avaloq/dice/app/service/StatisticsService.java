@@ -2,98 +2,162 @@ package com.avaloq.dice.app.service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.LongSummaryStatistics;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.avaloq.dice.app.config.StatisticsProperties;
 import com.avaloq.dice.app.exception.NoSimulationsException;
 import com.avaloq.dice.app.model.RollDistribution;
 import com.avaloq.dice.app.model.TotalNumberSimulation;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
 import com.avaloq.dice.app.repository.RollDiceItemRepository;
 import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.ResultAmountProjection;
 import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.StatisticsAggregation;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 @Service
 public class StatisticsService {
 
-    RollDiceRepository rollDiceRepository;
+    /**
+     * Percentages are counted in hundredths - two decimal places
+     */
+    private static final long PERCENT_SCALE = 100L * 100L;
+
+    /**
+     * Largest amount which multiplied by {@link #PERCENT_SCALE} does not overflow
+     */
+    private static final long MAX_EXACT_AMOUNT = Long.MAX_VALUE / PERCENT_SCALE;
+
+    RollDiceAggregateRepository rollDiceAggregateRepository;
     RollDiceItemRepository rollDiceItemRepository;
+    RollDiceRepository rollDiceRepository;
+    LiveStatisticsStore liveStatisticsStore;
+    TotalRollsCounter totalRollsCounter;
+    StatisticsAggregation aggregation;
 
-    public StatisticsService(RollDiceRepository rollDiceRepository,
-                             RollDiceItemRepository rollDiceItemRepository) {
-        this.rollDiceRepository = rollDiceRepository;
+    public StatisticsService(RollDiceAggregateRepository rollDiceAggregateRepository,
+                             RollDiceItemRepository rollDiceItemRepository,
+                             RollDiceRepository rollDiceRepository,
+                             LiveStatisticsStore liveStatisticsStore,
+                             TotalRollsCounter totalRollsCounter,
+                             StatisticsProperties properties) {
+        this.rollDiceAggregateRepository = rollDiceAggregateRepository;
         this.rollDiceItemRepository = rollDiceItemRepository;
+        this.rollDiceRepository = rollDiceRepository;
+        this.liveStatisticsStore = liveStatisticsStore;
+        this.totalRollsCounter = totalRollsCounter;
+        this.aggregation = properties.getAggregation();
     }
 
     /**
      * Method prepares total statistics data
-     * First it prepares for further aggregations
-     * Total rolls number are aggregated independently from total simulations number
-     * and than combined into a single result by matching aggregated data
+     * Totals are served from live statistics snapshot when it is available,
+     * otherwise they are read from aggregates maintained with every saved simulation - one row per dice number and sides number pair
      * @return Aggregated data
      */
     public List<TotalNumberSimulation> statsticsTotalNumber() {
+        if (liveStatisticsStore.isWarm()) {
+            return liveStatisticsStore.snapshot().getTotals().stream()
+                                      .map(t -> TotalNumberSimulation.builder()
+                                              .diceNo(t.getDiceNo())
+                                              .sidesNo(t.getSidesNo())
+                                              .totalRolls(t.getTotalRolls())
+                                              .totalSimulations(t.getTotalSimulations())
+                                              .build())
+                                      .collect(Collectors.toList());
+        }
 
-        final List<TotalNumberSimulation> simulations =
-                rollDiceRepository.findAll().stream()
-                                    .map(n -> TotalNumberSimulation.builder()
-                                            .diceNo(n.getDiceNo())
-                                            .sidesNo(n.getSidesNo())
-                                            .totalRolls(n.getResultItems().stream().map(e -> e.getAmount()).reduce(0L, Long::sum))
-                                            .totalSimulations(1L)
-                                            .build())
-                                    .collect(Collectors.toList());
-
-        final Map<Integer, Map<Integer, Long>> rollsAggregation = simulations.stream().collect(
-                Collectors.groupingBy(TotalNumberSimulation::getDiceNo,
-                                      Collectors.groupingBy(TotalNumberSimulation::getSidesNo,
-                                                            Collectors.summingLong(TotalNumberSimulation::getTotalRolls))));
-
-        final Map<Integer, Map<Integer, Long>> countAggregation = simulations.stream().collect(
-                Collectors.groupingBy(TotalNumberSimulation::getDiceNo,
-                                      Collectors.groupingBy(TotalNumberSimulation::getSidesNo,
-                                                            Collectors.counting())));
-
-        List<TotalNumberSimulation> aggregatedResults = new ArrayList<>();
-        rollsAggregation.forEach((diceNo, sidesMap) ->
-                                         sidesMap.forEach((sideNo, totalRolls) ->
-                                                      aggregatedResults.add(TotalNumberSimulation.builder()
-                                                                                    .sidesNo(sideNo)
-                                                                                    .diceNo(diceNo)
-                                                                                    .totalSimulations(countAggregation.get(diceNo).get(sideNo))
-                                                                                    .totalRolls(totalRolls)
-                                                                                    .build())));
-
-        return aggregatedResults;
+        return rollDiceAggregateRepository.findAll(Sort.by("diceNo", "sidesNo")).stream()
+                                          .map(a -> TotalNumberSimulation.builder()
+                                                  .diceNo(a.getDiceNo())
+                                                  .sidesNo(a.getSidesNo())
+                                                  .totalRolls(a.getTotalRolls())
+                                                  .totalSimulations(a.getTotalSimulations())
+                                                  .build())
+                                          .collect(Collectors.toList());
     }
 
 
     /**
      * Method provides relative distribution of a given pair dice number and sides number
      * Relative distribution is counted based on total rolls in all simulations, not only for given pair
+     * Total rolls are read from the running counter, not summed from stored simulations
      * @param diceNo
      * @param sidesNo
      * @return
      */
     public List<RollDistribution> relativeDistribution(int diceNo, int sidesNo) {
-        final Long simulationRolls = rollDiceItemRepository.sumAllSimulationRolls();
-        if (null == simulationRolls || 0L == simulationRolls) {
-            throw new NoSimulationsException();
+        if (liveStatisticsStore.isWarm()) {
+            return relativeDistribution(liveStatisticsStore.amounts(diceNo, sidesNo), liveStatisticsStore.snapshot().getTotalRolls());
         }
 
-        final BigDecimal allSimulationRolls = BigDecimal.valueOf(simulationRolls);
-        return rollDiceItemRepository
+        return relativeDistribution(aggregation == StatisticsAggregation.DATABASE
+                                            ? amountsAggregatedInDatabase(diceNo, sidesNo)
+                                            : amountsAggregatedInJava(diceNo, sidesNo),
+                                    totalRollsCounter.get());
+    }
+
+    Map<Integer, Long> amountsAggregatedInJava(int diceNo, int sidesNo) {
+        return withCompactHistograms(rollDiceItemRepository
                         .findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(diceNo, sidesNo).stream()
                         .collect(Collectors.groupingBy(RollDiceResultItemEntity::getResult,
-                                                       Collectors.summingLong(RollDiceResultItemEntity::getAmount)))
-                        .entrySet().stream()
+                                                       Collectors.summingLong(RollDiceResultItemEntity::getAmount))),
+                                     diceNo, sidesNo);
+    }
+
+    Map<Integer, Long> amountsAggregatedInDatabase(int diceNo, int sidesNo) {
+        return withCompactHistograms(rollDiceItemRepository.sumAmountsByResult(diceNo, sidesNo).stream()
+                        .collect(Collectors.toMap(ResultAmountProjection::getResult, ResultAmountProjection::getAmount,
+                                                  Long::sum, HashMap::new)),
+                                     diceNo, sidesNo);
+    }
+
+    /**
+     * Compact histograms can not be aggregated by the database, they are always merged in Java
+     */
+    private Map<Integer, Long> withCompactHistograms(Map<Integer, Long> amounts, int diceNo, int sidesNo) {
+        rollDiceRepository.findHistograms(diceNo, sidesNo)
+                          .forEach(h -> h.forEach((result, amount) -> amounts.merge(result, amount, Long::sum)));
+        return amounts;
+    }
+
+    private List<RollDistribution> relativeDistribution(Map<Integer, Long> amounts, long simulationRolls) {
+        if (0L == simulationRolls) {
+            throw new NoSimulationsException();
+        }
+
+        return amounts.entrySet().stream()
                         .map(e -> RollDistribution.builder()
                                 .sum(e.getKey())
-                                .percentage(BigDecimal.valueOf(e.getValue()).multiply(BigDecimal.valueOf(100)).divide(allSimulationRolls, 2, RoundingMode.HALF_EVEN))
+                                .scaledPercentage(scaledPercentage(e.getValue(), simulationRolls))
                                 .build())
                         .collect(Collectors.toList());
     }
+
+    /**
+     * Percentage of rolls in hundredths, rounded {@link RoundingMode#HALF_EVEN} - the same as dividing {@link BigDecimal}s to scale 2
+     * @param amount rolls of a sum
+     * @param simulationRolls total rolls, greater than 0
+     * @return Percentage multiplied by 100
+     */
+    static long scaledPercentage(long amount, long simulationRolls) {
+        if (amount > MAX_EXACT_AMOUNT) {
+            return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(100))
+                             .divide(BigDecimal.valueOf(simulationRolls), 2, RoundingMode.HALF_EVEN)
+                             .unscaledValue().longValueExact();
+        }
+        final long scaled = amount * PERCENT_SCALE;
+        final long quotient = scaled / simulationRolls;
+        final long remainder = scaled - quotient * simulationRolls;
+        final long rest = simulationRolls - remainder;
+        return remainder > rest || (remainder == rest && (quotient & 1L) == 1L) ? quotient + 1 : quotient;
+    }
 }
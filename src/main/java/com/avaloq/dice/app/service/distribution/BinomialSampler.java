@@ -0,0 +1,107 @@
+package com.avaloq.dice.app.service.distribution;
+
+import com.avaloq.dice.app.service.random.DiceRandom;
+
+/**
+ * Exact binomial variates.
+ * Small means are drawn by inversion (counting geometric waiting times),
+ * large ones with Hormann's BTRS transformed rejection, so the cost does not depend on the trials amount.
+ */
+public final class BinomialSampler {
+
+    private static final double INVERSION_MEAN_LIMIT = 10.0;
+
+    private static final double[] STIRLING_TAIL = {
+            0.0810614667953272, 0.0413406959554092, 0.0276779256849983, 0.02079067210376509,
+            0.0166446911898211, 0.0138761288230707, 0.0118967099458917, 0.0104112652619720,
+            0.00925546218271273, 0.00833056343336287
+    };
+
+    private BinomialSampler() {
+    }
+
+    /**
+     * @param random generator
+     * @param trials amount of trials
+     * @param probability success probability of a single trial
+     * @return amount of successes
+     */
+    public static long sample(DiceRandom random, long trials, double probability) {
+        if (trials <= 0 || probability <= 0.0) {
+            return 0L;
+        }
+        if (probability >= 1.0) {
+            return trials;
+        }
+        if (probability > 0.5) {
+            return trials - sample(random, trials, 1.0 - probability);
+        }
+        if (trials * probability < INVERSION_MEAN_LIMIT) {
+            return inversion(random, trials, probability);
+        }
+        return btrs(random, trials, probability);
+    }
+
+    private static long inversion(DiceRandom random, long trials, double probability) {
+        final double logQ = Math.log1p(-probability);
+        double waitingTime = 0.0;
+        long successes = 0L;
+        while (true) {
+            waitingTime += Math.ceil(Math.log(1.0 - nextDouble(random)) / logQ);
+            if (waitingTime > trials) {
+                return successes;
+            }
+            successes++;
+        }
+    }
+
+    private static long btrs(DiceRandom random, long trials, double probability) {
+        final double n = trials;
+        final double stddev = Math.sqrt(n * probability * (1.0 - probability));
+        final double b = 1.15 + 2.53 * stddev;
+        final double a = -0.0873 + 0.0248 * b + 0.01 * probability;
+        final double c = n * probability + 0.5;
+        final double vr = 0.92 - 4.2 / b;
+        final double r = probability / (1.0 - probability);
+        final double alpha = (2.83 + 5.1 / b) * stddev;
+        final double m = Math.floor((n + 1) * probability);
+
+        while (true) {
+            final double u = nextDouble(random) - 0.5;
+            double v = nextDouble(random);
+            final double us = 0.5 - Math.abs(u);
+            final double k = Math.floor((2 * a / us + b) * u + c);
+
+            if (k < 0 || k > n) {
+                continue;
+            }
+            if (us >= 0.07 && v <= vr) {
+                return (long) k;
+            }
+
+            v = Math.log(v * alpha / (a / (us * us) + b));
+            final double bound = (m + 0.5) * Math.log((m + 1) / (r * (n - m + 1)))
+                    + (n + 1) * Math.log((n - m + 1) / (n - k + 1))
+                    + (k + 0.5) * Math.log(r * (n - k + 1) / (k + 1))
+                    + stirlingTail(m) + stirlingTail(n - m) - stirlingTail(k) - stirlingTail(n - k);
+            if (v <= bound) {
+                return (long) k;
+            }
+        }
+    }
+
+    /**
+     * Tail of Stirling's approximation of log(k!)
+     */
+    private static double stirlingTail(double k) {
+        if (k <= 9) {
+            return STIRLING_TAIL[(int) k];
+        }
+        final double kp1sq = (k + 1) * (k + 1);
+        return (1.0 / 12 - (1.0 / 360 - 1.0 / 1260 / kp1sq) / kp1sq) / (k + 1);
+    }
+
+    private static double nextDouble(DiceRandom random) {
+        return (random.nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,129 @@
+package com.avaloq.dice.app.service.distribution;
+
+/**
+ * Convolution of probability distributions given as polynomial coefficients.
+ * Small inputs are convolved directly, larger ones with a radix-2 FFT.
+ * FFT results carry absolute error in order of 1e-15, negative noise is clamped to zero.
+ */
+public final class Convolutions {
+
+    /**
+     * Below this product of input lengths direct convolution is faster than FFT
+     */
+    private static final long DIRECT_CONVOLUTION_LIMIT = 1L << 15;
+
+    private Convolutions() {
+    }
+
+    /**
+     * Distribution of a sum of {@code exponent} independent variables, computed by exponentiation by squaring
+     * @param base distribution of a single variable
+     * @param exponent amount of variables, at least 1
+     * @return distribution of sum, index 0 corresponds to sum of {@code exponent} variables at index 0
+     */
+    public static double[] power(double[] base, int exponent) {
+        double[] result = null;
+        double[] square = base;
+        int remaining = exponent;
+        while (remaining > 0) {
+            if ((remaining & 1) == 1) {
+                result = null == result ? square : convolve(result, square);
+            }
+            remaining >>>= 1;
+            if (remaining > 0) {
+                square = convolve(square, square);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param a first polynomial coefficients
+     * @param b second polynomial coefficients
+     * @return product polynomial coefficients
+     */
+    public static double[] convolve(double[] a, double[] b) {
+        if ((long) a.length * b.length <= DIRECT_CONVOLUTION_LIMIT) {
+            return convolveDirect(a, b);
+        }
+        return convolveFft(a, b);
+    }
+
+    static double[] convolveDirect(double[] a, double[] b) {
+        final double[] result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            final double coefficient = a[i];
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] += coefficient * b[j];
+            }
+        }
+        return result;
+    }
+
+    static double[] convolveFft(double[] a, double[] b) {
+        final int resultLength = a.length + b.length - 1;
+        final int size = Integer.highestOneBit(resultLength - 1) << 1;
+
+        final double[] aRe = new double[size];
+        final double[] aIm = new double[size];
+        final double[] bRe = new double[size];
+        final double[] bIm = new double[size];
+        System.arraycopy(a, 0, aRe, 0, a.length);
+        System.arraycopy(b, 0, bRe, 0, b.length);
+
+        fft(aRe, aIm, false);
+        fft(bRe, bIm, false);
+        for (int i = 0; i < size; i++) {
+            final double re = aRe[i] * bRe[i] - aIm[i] * bIm[i];
+            final double im = aRe[i] * bIm[i] + aIm[i] * bRe[i];
+            aRe[i] = re;
+            aIm[i] = im;
+        }
+        fft(aRe, aIm, true);
+
+        final double[] result = new double[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            result[i] = Math.max(0.0, aRe[i] / size);
+        }
+        return result;
+    }
+
+    /**
+     * In place iterative radix-2 FFT, length must be a power of 2
+     */
+    private static void fft(double[] re, double[] im, boolean inverse) {
+        final int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >>> 1;
+            for (; (j & bit) != 0; bit >>>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double tmp = re[i];
+                re[i] = re[j];
+                re[j] = tmp;
+                tmp = im[i];
+                im[i] = im[j];
+                im[j] = tmp;
+            }
+        }
+        for (int length = 2; length <= n; length <<= 1) {
+            final double angle = 2 * Math.PI / length * (inverse ? 1 : -1);
+            final int half = length >>> 1;
+            for (int k = 0; k < half; k++) {
+                final double wRe = Math.cos(angle * k);
+                final double wIm = Math.sin(angle * k);
+                for (int i = k; i < n; i += length) {
+                    final int j = i + half;
+                    final double vRe = re[j] * wRe - im[j] * wIm;
+                    final double vIm = re[j] * wIm + im[j] * wRe;
+                    re[j] = re[i] - vRe;
+                    im[j] = im[i] - vIm;
+                    re[i] += vRe;
+                    im[i] += vIm;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.avaloq.dice.app.service.persistence;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.service.RollDiceStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts simulations stored as result items into compact histograms after startup.
+ * Every batch is converted in its own transaction, so the application serves requests in the meantime.
+ */
+@Component
+public class HistogramMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(HistogramMigration.class);
+
+    private final RollDiceStorageService rollDiceStorageService;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public HistogramMigration(RollDiceStorageService rollDiceStorageService, PersistenceProperties properties) {
+        this.rollDiceStorageService = rollDiceStorageService;
+        this.enabled = properties.isCompactMigration();
+        this.batchSize = properties.getCompactMigrationBatchSize();
+    }
+
+    /**
+     * @return Amount of converted simulations
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public long migrate() {
+        if (!enabled) {
+            return 0L;
+        }
+        long migrated = 0L;
+        for (int converted = rollDiceStorageService.compactItems(batchSize); converted > 0;
+             converted = rollDiceStorageService.compactItems(batchSize)) {
+            migrated += converted;
+            log.debug("Converted {} simulations into compact histograms", migrated);
+        }
+        log.info("Converted {} simulations into compact histograms", migrated);
+        return migrated;
+    }
+}
@@ -0,0 +1,71 @@
+package com.avaloq.dice.app.service.persistence;
+
+import java.time.Duration;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateId;
+import com.avaloq.dice.app.service.RollDiceStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically merges stored simulations of every dice number and sides number pair into a single row,
+ * so simulations table grows with the amount of pairs instead of the amount of requests.
+ * Only simulations stored before the run started are merged, in transactions of bounded size.
+ * Scheduled every {@code dice.persistence.compaction-interval} only when compaction is enabled.
+ */
+@Component
+public class SimulationCompaction implements SchedulingConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationCompaction.class);
+
+    private final RollDiceStorageService rollDiceStorageService;
+    private final RollDiceRepository rollDiceRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration interval;
+
+    public SimulationCompaction(RollDiceStorageService rollDiceStorageService,
+                                RollDiceRepository rollDiceRepository,
+                                PersistenceProperties properties) {
+        this.rollDiceStorageService = rollDiceStorageService;
+        this.rollDiceRepository = rollDiceRepository;
+        this.enabled = properties.isCompaction();
+        this.batchSize = properties.getCompactionBatchSize();
+        this.interval = properties.getCompactionInterval();
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        if (enabled) {
+            taskRegistrar.addFixedDelayTask(new IntervalTask(this::compact, interval.toMillis(), interval.toMillis()));
+        }
+    }
+
+    /**
+     * @return Amount of simulation rows deleted by merging
+     */
+    public long compact() {
+        final Long maxId = rollDiceRepository.findMaxId();
+        if (null == maxId) {
+            return 0L;
+        }
+        long merged = 0L;
+        for (RollDiceAggregateId pair : rollDiceRepository.findPairsToCompact()) {
+            int batch;
+            do {
+                batch = rollDiceStorageService.compactPair(pair.getDiceNo(), pair.getSidesNo(), maxId, batchSize);
+                merged += batch;
+            } while (batch > 0);
+        }
+        if (merged > 0) {
+            log.info("Compaction merged {} simulations", merged);
+        }
+        return merged;
+    }
+}
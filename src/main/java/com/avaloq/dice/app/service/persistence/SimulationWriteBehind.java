@@ -0,0 +1,307 @@
+package com.avaloq.dice.app.service.persistence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.service.RollDiceStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores simulations in the background, so requests do not wait for the database.
+ * Simulations are queued in a bounded queue and a single writer thread stores them in batches,
+ * each batch in a single transaction. When the queue is full {@link WriteBehindOverflow} is applied.
+ * Failed batches are retried with backoff and then stored simulation by simulation; if the writer thread dies,
+ * requests store their simulations by themselves.
+ * Simulations are added to live statistics once stored - queue depth and lag of the oldest simulation not stored yet
+ * are published as {@code dice.persistence.queue.depth} and {@code dice.persistence.lag} metrics.
+ */
+@Component
+public class SimulationWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationWriteBehind.class);
+
+    private static final long POLL_MILLIS = 100L;
+
+    private final RollDiceStorageService rollDiceStorageService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final WriteBehindOverflow overflow;
+    private final long blockTimeoutNanos;
+    private final int retries;
+    private final long retryBackoffMillis;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<QueuedSimulation> queue;
+
+    private final Counter written;
+    private final Counter shed;
+    private final Counter synchronous;
+    private final Counter failed;
+    private final DistributionSummary batches;
+
+    /**
+     * Time the oldest simulation of the batch being stored was queued at, 0 if there is no such batch
+     */
+    private volatile long storingSince;
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private Thread writer;
+
+    public SimulationWriteBehind(RollDiceStorageService rollDiceStorageService,
+                                 MeterRegistry meterRegistry,
+                                 PersistenceProperties properties) {
+        this.rollDiceStorageService = rollDiceStorageService;
+        this.enabled = properties.isWriteBehind();
+        this.batchSize = properties.getWriteBehindBatchSize();
+        this.overflow = properties.getWriteBehindOverflow();
+        this.blockTimeoutNanos = properties.getWriteBehindBlockTimeout().toNanos();
+        this.retries = properties.getWriteBehindRetries();
+        this.retryBackoffMillis = properties.getWriteBehindRetryBackoff().toMillis();
+        this.shutdownTimeout = properties.getWriteBehindShutdownTimeout();
+        this.queue = new ArrayBlockingQueue<>(properties.getWriteBehindCapacity());
+        this.accepting = enabled;
+
+        this.written = simulations(meterRegistry, "written");
+        this.shed = simulations(meterRegistry, "shed");
+        this.synchronous = simulations(meterRegistry, "sync");
+        this.failed = simulations(meterRegistry, "failed");
+        this.batches = DistributionSummary.builder("dice.persistence.batch")
+                                          .description("Simulations stored in a single transaction by the background writer")
+                                          .register(meterRegistry);
+        Gauge.builder("dice.persistence.queue.depth", queue, Collection::size)
+             .description("Simulations waiting to be stored by the background writer")
+             .register(meterRegistry);
+        TimeGauge.builder("dice.persistence.lag", this, TimeUnit.NANOSECONDS, SimulationWriteBehind::lagNanos)
+                 .description("Age of the oldest simulation not stored yet - how far statistics trail behind")
+                 .register(meterRegistry);
+    }
+
+    private static Counter simulations(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("dice.persistence.simulations")
+                      .tag("outcome", outcome)
+                      .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "dice-write-behind");
+        writer.start();
+    }
+
+    /**
+     * Queued simulations are stored before the application context is closed, at most for configured timeout
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        accepting = false;
+        running = false;
+        if (null == writer) {
+            return;
+        }
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            log.warn("Background writer has not finished in {}, {} simulations are not stored", shutdownTimeout, queue.size());
+            return;
+        }
+        // simulations queued while the writer was finishing
+        drain();
+    }
+
+    /**
+     * Queues simulation to be stored in the background
+     * @param simulation Simulation result
+     * @return true if simulation has been queued or shed, false if caller has to store it by itself -
+     * write-behind is not accepting simulations or the queue has stayed full for the block timeout
+     */
+    public boolean submit(SimulationResult simulation) {
+        if (!accepting) {
+            return false;
+        }
+        final QueuedSimulation queued = new QueuedSimulation(simulation, System.nanoTime());
+        if (queue.offer(queued)) {
+            return true;
+        }
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    if (queue.offer(queued, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronous.increment();
+                return false;
+            case SHED:
+                shed.increment();
+                log.warn("Write-behind queue is full, simulation {}d{} is not stored", simulation.getDiceNo(), simulation.getSidesNo());
+                return true;
+            default:
+                synchronous.increment();
+                return false;
+        }
+    }
+
+    /**
+     * @return Simulations waiting to be stored
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * @return Age of the oldest simulation not stored yet in nanoseconds, 0 if all simulations are stored
+     */
+    public long lagNanos() {
+        final long since = storingSince;
+        if (since != 0L) {
+            return System.nanoTime() - since;
+        }
+        final QueuedSimulation oldest = queue.peek();
+        return null != oldest ? System.nanoTime() - oldest.queuedAt : 0L;
+    }
+
+    private void run() {
+        try {
+            while (running || !queue.isEmpty()) {
+                final QueuedSimulation first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (null != first) {
+                    final List<QueuedSimulation> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeSafely(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (running) {
+                // nobody would store queued simulations anymore, requests store their own from now on
+                accepting = false;
+                log.error("Background writer stopped unexpectedly, {} queued simulations are stored on shutdown", queue.size());
+            }
+        }
+    }
+
+    /**
+     * Keeps the writer thread alive whatever the batch fails with
+     */
+    private void writeSafely(List<QueuedSimulation> batch) {
+        try {
+            write(batch);
+        } catch (Throwable e) {
+            storingSince = 0L;
+            failed.increment(batch.size());
+            log.error("Failed to store {} simulations", batch.size(), e);
+        }
+    }
+
+    /**
+     * Stores all queued simulations by the calling thread
+     */
+    void drain() {
+        final List<QueuedSimulation> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stores the batch, retried with backoff - after the last retry simulations are stored one by one,
+     * so only simulations which cannot be stored by themselves are counted as failed
+     */
+    private void write(List<QueuedSimulation> batch) {
+        storingSince = batch.get(0).queuedAt;
+        final List<SimulationResult> simulations = batch.stream().map(q -> q.simulation).collect(Collectors.toList());
+        try {
+            long backoff = retryBackoffMillis;
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                try {
+                    save(simulations);
+                    written.increment(simulations.size());
+                    batches.record(simulations.size());
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Failed to store {} simulations, attempt {} of {}", simulations.size(), attempt + 1, retries + 1, e);
+                }
+                if (attempt < retries && !sleep(backoff)) {
+                    break;
+                }
+                backoff *= 2;
+            }
+            simulations.forEach(this::writeOne);
+        } finally {
+            storingSince = 0L;
+        }
+    }
+
+    private void writeOne(SimulationResult simulation) {
+        try {
+            save(Collections.singletonList(simulation));
+            written.increment();
+            batches.record(1);
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Simulation {}d{} is not stored", simulation.getDiceNo(), simulation.getSidesNo(), e);
+        }
+    }
+
+    /**
+     * Save is retried once at once if aggregate of a pair has been created by a concurrent simulation in the meantime
+     */
+    private void save(List<SimulationResult> simulations) {
+        try {
+            rollDiceStorageService.saveAll(simulations);
+        } catch (DataIntegrityViolationException e) {
+            rollDiceStorageService.saveAll(simulations);
+        }
+    }
+
+    /**
+     * @return false if interrupted - the writer is being stopped, retries are not waited for then
+     */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static final class QueuedSimulation {
+
+        private final SimulationResult simulation;
+        private final long queuedAt;
+
+        private QueuedSimulation(SimulationResult simulation, long queuedAt) {
+            this.simulation = simulation;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
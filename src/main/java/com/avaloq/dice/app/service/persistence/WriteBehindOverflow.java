@@ -0,0 +1,22 @@
+package com.avaloq.dice.app.service.persistence;
+
+/**
+ * What happens with a simulation to be stored when write-behind queue is full
+ */
+public enum WriteBehindOverflow {
+
+    /**
+     * Request waits until there is room in the queue
+     */
+    BLOCK,
+
+    /**
+     * Simulation is not stored at all, it is only counted as shed
+     */
+    SHED,
+
+    /**
+     * Simulation is stored synchronously, by the request thread
+     */
+    SYNC
+}
@@ -0,0 +1,56 @@
+package com.avaloq.dice.app.service.random;
+
+/**
+ * Unbiased bounded values drawn with Lemire's multiply-shift method.
+ * Division is needed only in the rare case when the draw falls into the biased region.
+ */
+public final class BoundedRandoms {
+
+    private static final long TWO_TO_32 = 1L << 32;
+
+    private BoundedRandoms() {
+    }
+
+    /**
+     * @param random generator
+     * @param bound upper bound (exclusive), must be positive
+     * @return uniformly distributed value between 0 (inclusive) and bound (exclusive)
+     */
+    public static int nextInt(DiceRandom random, int bound) {
+        long product = (random.nextLong() >>> 32) * bound;
+        long low = product & 0xFFFFFFFFL;
+        if (low < bound) {
+            final long threshold = (TWO_TO_32 - bound) % bound;
+            while (low < threshold) {
+                product = (random.nextLong() >>> 32) * bound;
+                low = product & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    /**
+     * @param random generator
+     * @param bound upper bound (exclusive), must be positive
+     * @return uniformly distributed value between 0 (inclusive) and bound (exclusive)
+     */
+    public static long nextLong(DiceRandom random, long bound) {
+        long bits = random.nextLong();
+        long low = bits * bound;
+        if (Long.compareUnsigned(low, bound) < 0) {
+            final long threshold = Long.remainderUnsigned(-bound, bound);
+            while (Long.compareUnsigned(low, threshold) < 0) {
+                bits = random.nextLong();
+                low = bits * bound;
+            }
+        }
+        return unsignedMultiplyHigh(bits, bound);
+    }
+
+    /**
+     * High 64 bits of 128 bit product of unsigned bits and non negative bound
+     */
+    private static long unsignedMultiplyHigh(long bits, long bound) {
+        return Math.multiplyHigh(bits, bound) + ((bits >> 63) & bound);
+    }
+}
@@ -0,0 +1,19 @@
+package com.avaloq.dice.app.service.random;
+
+/**
+ * Source of random numbers used for rolling dice.
+ * Implementations are not required to be thread safe - a generator must be used by a single thread at a time.
+ */
+public interface DiceRandom {
+
+    /**
+     * @return uniformly distributed 64 bits
+     */
+    long nextLong();
+
+    /**
+     * @param bound upper bound (exclusive), must be positive
+     * @return uniformly distributed value between 0 (inclusive) and bound (exclusive)
+     */
+    int nextInt(int bound);
+}
@@ -0,0 +1,18 @@
+package com.avaloq.dice.app.service.random;
+
+/**
+ * Provides random generators for dice rolls, selected with {@code dice.simulation.random-provider} property
+ */
+public interface DiceRandomProvider {
+
+    /**
+     * @return generator owned by the calling thread, must not be passed to other threads
+     */
+    DiceRandom current();
+
+    /**
+     * @param seed generator seed
+     * @return new independent generator, e.g. for a single simulation or simulation chunk
+     */
+    DiceRandom create(long seed);
+}
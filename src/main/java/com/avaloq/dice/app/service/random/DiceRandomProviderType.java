@@ -0,0 +1,28 @@
+package com.avaloq.dice.app.service.random;
+
+/**
+ * Available random generator providers
+ */
+public enum DiceRandomProviderType {
+
+    THREAD_LOCAL {
+        @Override
+        public DiceRandomProvider create() {
+            return new ThreadLocalDiceRandomProvider();
+        }
+    },
+    SPLITTABLE {
+        @Override
+        public DiceRandomProvider create() {
+            return new SplittableDiceRandomProvider();
+        }
+    },
+    XOSHIRO256 {
+        @Override
+        public DiceRandomProvider create() {
+            return new Xoshiro256DiceRandomProvider();
+        }
+    };
+
+    public abstract DiceRandomProvider create();
+}
@@ -0,0 +1,25 @@
+package com.avaloq.dice.app.service.random;
+
+import java.util.SplittableRandom;
+
+/**
+ * {@link DiceRandom} backed by {@link SplittableRandom}
+ */
+public class SplittableDiceRandom implements DiceRandom {
+
+    private final SplittableRandom random;
+
+    public SplittableDiceRandom(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+}
@@ -0,0 +1,23 @@
+package com.avaloq.dice.app.service.random;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Provider of thread confined {@link SplittableRandom} generators
+ */
+public class SplittableDiceRandomProvider implements DiceRandomProvider {
+
+    private final ThreadLocal<DiceRandom> current = ThreadLocal.withInitial(
+            () -> create(ThreadLocalRandom.current().nextLong()));
+
+    @Override
+    public DiceRandom current() {
+        return current.get();
+    }
+
+    @Override
+    public DiceRandom create(long seed) {
+        return new SplittableDiceRandom(new SplittableRandom(seed));
+    }
+}
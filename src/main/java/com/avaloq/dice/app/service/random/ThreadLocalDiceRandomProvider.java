@@ -0,0 +1,33 @@
+package com.avaloq.dice.app.service.random;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Provider backed by {@link ThreadLocalRandom}, which keeps its state in the current thread.
+ * Seeded generators are {@link SplittableRandom} based, as {@link ThreadLocalRandom} cannot be seeded.
+ */
+public class ThreadLocalDiceRandomProvider implements DiceRandomProvider {
+
+    private static final DiceRandom CURRENT = new DiceRandom() {
+        @Override
+        public long nextLong() {
+            return ThreadLocalRandom.current().nextLong();
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return ThreadLocalRandom.current().nextInt(bound);
+        }
+    };
+
+    @Override
+    public DiceRandom current() {
+        return CURRENT;
+    }
+
+    @Override
+    public DiceRandom create(long seed) {
+        return new SplittableDiceRandom(new SplittableRandom(seed));
+    }
+}
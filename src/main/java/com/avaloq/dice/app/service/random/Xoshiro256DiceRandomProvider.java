@@ -0,0 +1,22 @@
+package com.avaloq.dice.app.service.random;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Provider of thread confined {@link Xoshiro256StarStar} generators
+ */
+public class Xoshiro256DiceRandomProvider implements DiceRandomProvider {
+
+    private final ThreadLocal<DiceRandom> current = ThreadLocal.withInitial(
+            () -> create(ThreadLocalRandom.current().nextLong()));
+
+    @Override
+    public DiceRandom current() {
+        return current.get();
+    }
+
+    @Override
+    public DiceRandom create(long seed) {
+        return new Xoshiro256StarStar(seed);
+    }
+}
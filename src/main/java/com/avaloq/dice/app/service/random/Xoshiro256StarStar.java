@@ -0,0 +1,56 @@
+package com.avaloq.dice.app.service.random;
+
+/**
+ * xoshiro256** generator by Blackman and Vigna, state is initialized with SplitMix64 from the seed
+ */
+public class Xoshiro256StarStar implements DiceRandom {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    public Xoshiro256StarStar(long seed) {
+        long x = seed;
+        s0 = splitMix64(x += 0x9E3779B97F4A7C15L);
+        s1 = splitMix64(x += 0x9E3779B97F4A7C15L);
+        s2 = splitMix64(x += 0x9E3779B97F4A7C15L);
+        s3 = splitMix64(x + 0x9E3779B97F4A7C15L);
+    }
+
+    private static long splitMix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        final long t = s1 << 17;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+
+        return result;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        final int max = bound - 1;
+        int bits = (int) (nextLong() >>> 33);
+        int value = bits % bound;
+        while (bits - value + max < 0) {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,79 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.random.BoundedRandoms;
+import com.avaloq.dice.app.service.random.DiceRandom;
+
+/**
+ * Walker's alias method sampler of a sum of dice, built with Vose's algorithm from the exact sum distribution.
+ * A roll costs a column draw and a biased coin flip, regardless of the dice number.
+ */
+public class AliasDiceSampler implements DiceSumSampler {
+
+    private static final double TWO_TO_53 = 0x1.0p53;
+
+    private final int minSum;
+    private final long[] thresholds;
+    private final int[] aliases;
+
+    public AliasDiceSampler(ExactDistribution distribution) {
+        final int size = distribution.getMaxSum() - distribution.getMinSum() + 1;
+        this.minSum = distribution.getMinSum();
+        this.thresholds = new long[size];
+        this.aliases = new int[size];
+
+        double total = 0.0;
+        for (int i = 0; i < size; i++) {
+            total += distribution.probability(minSum + i);
+        }
+        final double[] scaled = new double[size];
+        final int[] small = new int[size];
+        final int[] large = new int[size];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = distribution.probability(minSum + i) * size / total;
+            if (scaled[i] < 1.0) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            final int less = small[--smallSize];
+            final int more = large[--largeSize];
+            thresholds[less] = (long) (scaled[less] * TWO_TO_53);
+            aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        while (largeSize > 0) {
+            final int column = large[--largeSize];
+            thresholds[column] = (long) TWO_TO_53;
+            aliases[column] = column;
+        }
+        while (smallSize > 0) {
+            final int column = small[--smallSize];
+            thresholds[column] = (long) TWO_TO_53;
+            aliases[column] = column;
+        }
+    }
+
+    /**
+     * @return amount of table columns, equal to the amount of distinct sums
+     */
+    public int size() {
+        return thresholds.length;
+    }
+
+    @Override
+    public int sample(DiceRandom random) {
+        final int column = BoundedRandoms.nextInt(random, thresholds.length);
+        return minSum + ((random.nextLong() >>> 11) < thresholds[column] ? column : aliases[column]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import org.springframework.stereotype.Component;
+
+/**
+ * Alias table samplers kept in LRU cache bounded by the total amount of table columns,
+ * so repeated simulations of the same dice number and sides number pair skip table construction
+ */
+@Component
+public class AliasTableCache {
+
+    private final ExactDistributionService exactDistributionService;
+    private final int aliasDiceThreshold;
+    private final long maxColumns;
+
+    private final LinkedHashMap<Long, AliasDiceSampler> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long columns;
+
+    public AliasTableCache(ExactDistributionService exactDistributionService, SimulationProperties properties) {
+        this.exactDistributionService = exactDistributionService;
+        this.aliasDiceThreshold = properties.getAliasDiceThreshold();
+        this.maxColumns = properties.getAliasCacheMaxColumns();
+    }
+
+    /**
+     * Alias table pays off for many dice per roll, when there are more rolls than table columns to build
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @return true if simulation should use alias table sampler
+     */
+    public boolean isApplicable(int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        final long columns = (long) numberOfDice * (numberOfDiceSides - 1) + 1;
+        return numberOfDice >= aliasDiceThreshold && numberOfRolls >= columns && columns <= maxColumns;
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return alias table sampler, shared between threads
+     */
+    public AliasDiceSampler sampler(int numberOfDice, int numberOfDiceSides) {
+        final Long key = ((long) numberOfDice << 32) | numberOfDiceSides;
+        synchronized (cache) {
+            final AliasDiceSampler cached = cache.get(key);
+            if (null != cached) {
+                return cached;
+            }
+        }
+
+        final AliasDiceSampler sampler =
+                new AliasDiceSampler(exactDistributionService.exactDistribution(numberOfDice, numberOfDiceSides));
+
+        synchronized (cache) {
+            final AliasDiceSampler concurrent = cache.putIfAbsent(key, sampler);
+            if (null != concurrent) {
+                return concurrent;
+            }
+            columns += sampler.size();
+            evict();
+        }
+        return sampler;
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Long, AliasDiceSampler>> eldest = cache.entrySet().iterator();
+        while (columns > maxColumns && eldest.hasNext()) {
+            columns -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+}
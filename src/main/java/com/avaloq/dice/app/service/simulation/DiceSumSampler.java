@@ -0,0 +1,16 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.service.random.DiceRandom;
+
+/**
+ * Draws sum of a single roll of a fixed dice number and sides number pair
+ */
+@FunctionalInterface
+public interface DiceSumSampler {
+
+    /**
+     * @param random generator owned by the caller
+     * @return sum of a single roll of all dice
+     */
+    int sample(DiceRandom random);
+}
@@ -0,0 +1,69 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import com.avaloq.dice.app.service.distribution.BinomialSampler;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import org.springframework.stereotype.Component;
+
+/**
+ * Draws simulation histogram directly from the exact sum distribution, without simulating single rolls.
+ * Histogram follows multinomial distribution, drawn as a sequence of binomials conditioned on rolls left,
+ * so the cost depends on the amount of distinct sums only.
+ */
+@Component
+public class MultinomialRollSimulator {
+
+    private final ExactDistributionService exactDistributionService;
+    private final long threshold;
+
+    public MultinomialRollSimulator(ExactDistributionService exactDistributionService,
+                                    SimulationProperties properties) {
+        this.exactDistributionService = exactDistributionService;
+        this.threshold = properties.getMultinomialThreshold();
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfRolls simulations amount
+     * @return true if rolling each dice would cost more than configured threshold
+     */
+    public boolean isApplicable(int numberOfDice, int numberOfRolls) {
+        return (long) numberOfDice * numberOfRolls >= threshold;
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param random generator owned by the caller
+     * @return Simulation histogram
+     */
+    public RollHistogram simulate(int numberOfDice, int numberOfDiceSides, long numberOfRolls, DiceRandom random) {
+        return simulate(exactDistributionService.exactDistribution(numberOfDice, numberOfDiceSides), numberOfRolls, random);
+    }
+
+    /**
+     * @param distribution exact sum distribution
+     * @param numberOfRolls simulations amount
+     * @param random generator owned by the caller
+     * @return Simulation histogram
+     */
+    public RollHistogram simulate(ExactDistribution distribution, long numberOfRolls, DiceRandom random) {
+        final RollHistogram histogram = new RollHistogram(distribution.getDiceNo(), distribution.getSidesNo());
+
+        long remainingRolls = numberOfRolls;
+        for (int sum = distribution.getMinSum(); sum <= distribution.getMaxSum() && remainingRolls > 0; sum++) {
+            final double probability = distribution.probability(sum);
+            // precomputed tail instead of subtracting from 1, which drifts on long tails
+            final double remainingProbability = distribution.tailProbability(sum);
+            final long amount = sum == distribution.getMaxSum() || probability >= remainingProbability
+                    ? remainingRolls
+                    : BinomialSampler.sample(random, remainingRolls, probability / remainingProbability);
+            histogram.add(sum, amount);
+            remainingRolls -= amount;
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,142 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.service.random.BoundedRandoms;
+import com.avaloq.dice.app.service.random.DiceRandom;
+
+/**
+ * Rolls several dice with a single generator draw.
+ * A value drawn from {@code [0, sides^k)} is a k digits number in base {@code sides}, each digit being one die.
+ * Digits are decoded in groups with a lookup table of partial sums, so a group costs one division.
+ */
+public class PackedDiceSampler implements DiceSumSampler {
+
+    /**
+     * Maximal size of partial sums table (16 kB, fits in L1 cache)
+     */
+    static final int MAX_TABLE_SIZE = 4096;
+
+    private final int numberOfDice;
+    private final int dicePerDraw;
+    private final int fullDraws;
+    private final long drawBound;
+    private final int groupBound;
+    private final int[] groupSums;
+    private final int remainingDice;
+    private final long remainingBound;
+
+    public PackedDiceSampler(int numberOfDice, int numberOfDiceSides) {
+        if (!supports(numberOfDice, numberOfDiceSides)) {
+            throw new IllegalArgumentException("Packed draws are not supported for given dice");
+        }
+        this.numberOfDice = numberOfDice;
+
+        this.dicePerDraw = dicePerDraw(numberOfDice, numberOfDiceSides);
+        this.fullDraws = numberOfDice / dicePerDraw;
+        this.drawBound = power(numberOfDiceSides, dicePerDraw);
+
+        final int group = (int) power(numberOfDiceSides, dicePerGroup(dicePerDraw, numberOfDiceSides));
+        this.groupBound = group;
+        this.groupSums = new int[group];
+        for (int value = 1; value < group; value++) {
+            groupSums[value] = groupSums[value / numberOfDiceSides] + value % numberOfDiceSides;
+        }
+
+        this.remainingDice = numberOfDice % dicePerDraw;
+        this.remainingBound = power(numberOfDiceSides, remainingDice);
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return amount of dice rolled with a single full draw, so that {@code sides^k} fits in 63 bits
+     */
+    static int dicePerDraw(int numberOfDice, int numberOfDiceSides) {
+        int dice = 0;
+        long bound = 1L;
+        while (dice < numberOfDice && bound <= Long.MAX_VALUE / numberOfDiceSides) {
+            bound *= numberOfDiceSides;
+            dice++;
+        }
+        return dice;
+    }
+
+    /**
+     * @param dicePerDraw dice rolled with a single draw
+     * @param numberOfDiceSides dice sides number
+     * @return amount of dice decoded with a single partial sums table lookup
+     */
+    static int dicePerGroup(int dicePerDraw, int numberOfDiceSides) {
+        int dice = 0;
+        int group = 1;
+        while (dice < dicePerDraw && group * numberOfDiceSides <= MAX_TABLE_SIZE) {
+            group *= numberOfDiceSides;
+            dice++;
+        }
+        return dice;
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return amount of generator draws needed for a single roll
+     */
+    public static int drawsPerRoll(int numberOfDice, int numberOfDiceSides) {
+        final int perDraw = dicePerDraw(numberOfDice, numberOfDiceSides);
+        return (numberOfDice + perDraw - 1) / perDraw;
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return amount of partial sums table lookups needed for a single roll
+     */
+    public static int groupsPerRoll(int numberOfDice, int numberOfDiceSides) {
+        final int perGroup = dicePerGroup(dicePerDraw(numberOfDice, numberOfDiceSides), numberOfDiceSides);
+        return (numberOfDice + perGroup - 1) / perGroup;
+    }
+
+    private static long power(int base, int exponent) {
+        long result = 1L;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return true if at least two dice fit into a single draw and partial sums table is small enough
+     */
+    public static boolean supports(int numberOfDice, int numberOfDiceSides) {
+        return numberOfDice >= 2 && numberOfDiceSides <= MAX_TABLE_SIZE;
+    }
+
+    /**
+     * @return amount of dice rolled with a single full draw
+     */
+    public int getDicePerDraw() {
+        return dicePerDraw;
+    }
+
+    @Override
+    public int sample(DiceRandom random) {
+        int sum = numberOfDice;
+        for (int draw = 0; draw < fullDraws; draw++) {
+            sum += decode(BoundedRandoms.nextLong(random, drawBound));
+        }
+        if (remainingDice > 0) {
+            sum += decode(BoundedRandoms.nextLong(random, remainingBound));
+        }
+        return sum;
+    }
+
+    private int decode(long value) {
+        int sum = 0;
+        while (value >= groupBound) {
+            sum += groupSums[(int) (value % groupBound)];
+            value /= groupBound;
+        }
+        return sum + groupSums[(int) value];
+    }
+}
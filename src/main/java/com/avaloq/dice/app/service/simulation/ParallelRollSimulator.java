@@ -0,0 +1,145 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.PreDestroy;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.random.DiceRandomProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs simulation split into fixed size chunks, each chunk rolled with its own generator
+ * seeded from a {@link SplittableRandom} root. Chunk histograms are merged, which is order independent, so for a given seed the result
+ * does not depend on the parallelism nor on whether chunks were executed in parallel.
+ */
+@Component
+public class ParallelRollSimulator {
+
+    /**
+     * Rolls given amount of times into a histogram using provided generator
+     */
+    @FunctionalInterface
+    public interface ChunkSimulation {
+        void roll(RollHistogram histogram, int numberOfRolls, DiceRandom random);
+    }
+
+    private final DiceRandomProvider randomProvider;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int parallelism;
+
+    public ParallelRollSimulator(SimulationProperties properties, DiceRandomProvider randomProvider) {
+        this.randomProvider = randomProvider;
+        this.chunkSize = properties.getChunkSize();
+        this.parallelism = properties.getParallelism();
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @param numberOfRolls simulation rolls amount
+     * @return amount of workers which may roll chunks of given simulation at once
+     */
+    public int workers(int numberOfRolls) {
+        return Math.min(parallelism, chunks(numberOfRolls));
+    }
+
+    private int chunks(int numberOfRolls) {
+        return (int) ((numberOfRolls + (long) chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Simulation of chunked rolls, in parallel or on the calling thread
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seed root generator seed
+     * @param parallel true if chunks should be rolled on fork/join pool
+     * @param chunkSimulation single chunk simulation
+     * @return Merged simulation histogram
+     */
+    public RollHistogram simulate(int numberOfDice, int numberOfDiceSides, int numberOfRolls, long seed,
+                                  boolean parallel, ChunkSimulation chunkSimulation) {
+        final int chunks = chunks(numberOfRolls);
+        final SplittableRandom root = new SplittableRandom(seed);
+        final DiceRandom[] randoms = new DiceRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            randoms[i] = randomProvider.create(root.nextLong());
+        }
+
+        ChunkTask task = new ChunkTask(numberOfDice, numberOfDiceSides, numberOfRolls, randoms, chunkSimulation,
+                                       0, chunks, Math.max(1, chunks / (parallelism * 4)));
+        return parallel ? pool.invoke(task) : task.rollChunks();
+    }
+
+    /**
+     * Runs independent simulations on the fork/join pool, so they share it with chunks of parallel simulations
+     * Simulations may be parallel themselves - their chunks are forked from the worker running the simulation
+     * @param simulations simulations to run
+     * @return Completed futures in the order of simulations, once all are finished - a failed simulation does not affect the others
+     */
+    public <T> List<Future<T>> invokeAll(List<Callable<T>> simulations) {
+        return pool.invokeAll(simulations);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private class ChunkTask extends RecursiveTask<RollHistogram> {
+
+        private final int numberOfDice;
+        private final int numberOfDiceSides;
+        private final int numberOfRolls;
+        private final DiceRandom[] randoms;
+        private final ChunkSimulation chunkSimulation;
+        private final int from;
+        private final int to;
+        private final int chunksPerTask;
+
+        ChunkTask(int numberOfDice, int numberOfDiceSides, int numberOfRolls, DiceRandom[] randoms,
+                  ChunkSimulation chunkSimulation, int from, int to, int chunksPerTask) {
+            this.numberOfDice = numberOfDice;
+            this.numberOfDiceSides = numberOfDiceSides;
+            this.numberOfRolls = numberOfRolls;
+            this.randoms = randoms;
+            this.chunkSimulation = chunkSimulation;
+            this.from = from;
+            this.to = to;
+            this.chunksPerTask = chunksPerTask;
+        }
+
+        @Override
+        protected RollHistogram compute() {
+            if (to - from <= chunksPerTask) {
+                return rollChunks();
+            }
+            final int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(numberOfDice, numberOfDiceSides, numberOfRolls, randoms,
+                                           chunkSimulation, from, middle, chunksPerTask);
+            ChunkTask right = new ChunkTask(numberOfDice, numberOfDiceSides, numberOfRolls, randoms,
+                                            chunkSimulation, middle, to, chunksPerTask);
+            left.fork();
+            RollHistogram histogram = right.compute();
+            histogram.merge(left.join());
+            return histogram;
+        }
+
+        RollHistogram rollChunks() {
+            RollHistogram histogram = new RollHistogram(numberOfDice, numberOfDiceSides);
+            for (int chunk = from; chunk < to; chunk++) {
+                final long firstRoll = (long) chunk * chunkSize;
+                final int rolls = (int) Math.min(chunkSize, numberOfRolls - firstRoll);
+                chunkSimulation.roll(histogram, rolls, randoms[chunk]);
+            }
+            return histogram;
+        }
+    }
+}
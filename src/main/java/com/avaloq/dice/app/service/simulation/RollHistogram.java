@@ -0,0 +1,112 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.avaloq.dice.app.model.RollDice;
+
+/**
+ * Dense histogram of roll sums for a given dice number and sides number pair.
+ * Counts are kept in a primitive array indexed by {@code sum - numberOfDice},
+ * so counting a roll does not allocate anything.
+ */
+public class RollHistogram {
+
+    /**
+     * Maximal amount of distinct sums kept in a dense histogram (8 MB of counters)
+     */
+    public static final int MAX_DENSE_RANGE = 1 << 20;
+
+    private final int minSum;
+    private final long[] counts;
+
+    public RollHistogram(int numberOfDice, int numberOfDiceSides) {
+        if (!fits(numberOfDice, numberOfDiceSides)) {
+            throw new IllegalArgumentException("Sum range too large for dense histogram");
+        }
+        this.minSum = numberOfDice;
+        this.counts = new long[(int) range(numberOfDice, numberOfDiceSides)];
+    }
+
+    /**
+     * Checks if sums of given dice configuration may be counted in a dense histogram
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @return true if sum range does not exceed {@link #MAX_DENSE_RANGE}
+     */
+    public static boolean fits(int numberOfDice, int numberOfDiceSides) {
+        return range(numberOfDice, numberOfDiceSides) <= MAX_DENSE_RANGE;
+    }
+
+    private static long range(int numberOfDice, int numberOfDiceSides) {
+        return (long) numberOfDice * numberOfDiceSides - numberOfDice + 1;
+    }
+
+    /**
+     * Counts a single roll
+     * @param sum roll sum
+     */
+    public void add(int sum) {
+        counts[sum - minSum]++;
+    }
+
+    /**
+     * Counts given amount of rolls with the same sum
+     * @param sum roll sum
+     * @param amount amount of rolls
+     */
+    public void add(int sum, long amount) {
+        counts[sum - minSum] += amount;
+    }
+
+    /**
+     * Adds all counts of other histogram of the same dice configuration
+     * @param other histogram to merge
+     */
+    public void merge(RollHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    public int getMinSum() {
+        return minSum;
+    }
+
+    public int getMaxSum() {
+        return minSum + counts.length - 1;
+    }
+
+    /**
+     * @param sum roll sum
+     * @return amount of rolls with given sum
+     */
+    public long getAmount(int sum) {
+        return counts[sum - minSum];
+    }
+
+    /**
+     * @return total amount of counted rolls
+     */
+    public long totalRolls() {
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Materializes histogram as simulation result, sums that were never rolled are skipped
+     * @return results ordered by sum
+     */
+    public List<RollDice> toRollDice() {
+        List<RollDice> result = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0L) {
+                result.add(new RollDice(minSum + i, counts[i]));
+            }
+        }
+        return result;
+    }
+}
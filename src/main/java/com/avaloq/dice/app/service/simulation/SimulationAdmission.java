@@ -0,0 +1,210 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.SimulationOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admits simulations against a global compute budget - estimated CPU time of simulations in progress at once,
+ * so bursts of expensive simulations queue or are shed instead of all competing for the cores.
+ * Simulations waiting for the budget are admitted in arrival order, so a big simulation is not starved by small ones.
+ * Outcomes are published as {@code dice.simulation.admission} metric, budget in use and waiting simulations as gauges.
+ */
+@Component
+public class SimulationAdmission {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationAdmission.class);
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final SimulationStrategySelector simulationStrategySelector;
+    private final boolean enabled;
+    private final long budget;
+    private final long maxCost;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final int parallelism;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long inProgress;
+
+    private final Counter admitted;
+    private final Counter queued;
+    private final Counter shed;
+
+    public SimulationAdmission(SimulationStrategySelector simulationStrategySelector,
+                               MeterRegistry meterRegistry,
+                               SimulationProperties properties) {
+        this.simulationStrategySelector = simulationStrategySelector;
+        this.enabled = properties.isAdmissionEnabled();
+        this.budget = properties.getAdmissionBudget().toNanos();
+        this.maxCost = properties.getAdmissionMaxCost().toNanos();
+        this.queueCapacity = properties.getAdmissionQueueCapacity();
+        this.maxWaitNanos = properties.getAdmissionMaxWait().toNanos();
+        this.parallelism = properties.getParallelism();
+
+        this.admitted = simulations(meterRegistry, "admitted");
+        this.queued = simulations(meterRegistry, "queued");
+        this.shed = simulations(meterRegistry, "shed");
+        Gauge.builder("dice.simulation.admission.budget.used", this, SimulationAdmission::inProgress)
+             .description("Estimated CPU time of admitted simulations in progress")
+             .baseUnit("nanoseconds")
+             .register(meterRegistry);
+        Gauge.builder("dice.simulation.admission.waiting", this, SimulationAdmission::waiting)
+             .description("Simulations waiting for the compute budget")
+             .register(meterRegistry);
+    }
+
+    private static Counter simulations(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("dice.simulation.admission")
+                      .tag("outcome", outcome)
+                      .register(meterRegistry);
+    }
+
+    /**
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seeded true if simulation is seeded
+     * @return Cost of the simulation in budget units - estimated CPU time of the selected kernel in nanoseconds
+     */
+    public long cost(int numberOfDice, int numberOfDiceSides, int numberOfRolls, boolean seeded) {
+        return (long) Math.ceil(simulationStrategySelector.estimateWork(numberOfDice, numberOfDiceSides, numberOfRolls, seeded));
+    }
+
+    /**
+     * Runs the simulation once its cost fits into the budget, waiting for at most {@code dice.simulation.admission-max-wait}
+     * @param cost simulation cost, see {@link #cost}
+     * @param simulation simulation to run on the calling thread
+     * @return Simulation result
+     * @throws SimulationOverloadedException when shed - the simulation costs more than {@code dice.simulation.admission-max-cost},
+     *         too many simulations are waiting or the budget has not been available in time
+     */
+    public <T> T admit(long cost, Supplier<T> simulation) {
+        if (!enabled) {
+            return simulation.get();
+        }
+        if (cost > maxCost) {
+            shed.increment();
+            log.warn("Simulation estimated {} ms exceeds the maximal cost", cost / 1_000_000L);
+            lock.lock();
+            try {
+                throw new SimulationOverloadedException(true, retryAfterSeconds());
+            } finally {
+                lock.unlock();
+            }
+        }
+        final long permits = Math.max(1L, Math.min(cost, budget));
+        acquire(permits);
+        try {
+            return simulation.get();
+        } finally {
+            release(permits);
+        }
+    }
+
+    private void acquire(long permits) {
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && fits(permits)) {
+                inProgress += permits;
+                admitted.increment();
+                return;
+            }
+            if (waiting.size() >= queueCapacity) {
+                shed.increment();
+                throw new SimulationOverloadedException(true, retryAfterSeconds());
+            }
+
+            final Object ticket = new Object();
+            waiting.addLast(ticket);
+            queued.increment();
+            try {
+                long remaining = maxWaitNanos;
+                while (waiting.peekFirst() != ticket || !fits(permits)) {
+                    if (remaining <= 0L) {
+                        shed.increment();
+                        log.warn("Simulation estimated {} ms has not been admitted in {} ms", permits / 1_000_000L,
+                                 TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+                        throw new SimulationOverloadedException(false, retryAfterSeconds());
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inProgress += permits;
+                admitted.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shed.increment();
+                throw new SimulationOverloadedException(false, retryAfterSeconds());
+            } finally {
+                waiting.remove(ticket);
+                // next waiting simulation may fit now
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long permits) {
+        lock.lock();
+        try {
+            inProgress -= permits;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Simulation larger than the whole budget, but within the maximal cost, is capped to it, so it fits once nothing else is in progress
+     */
+    private boolean fits(long permits) {
+        return inProgress + permits <= budget;
+    }
+
+    /**
+     * Time for the budget in use to be worked off by all cores, at least a second
+     */
+    private long retryAfterSeconds() {
+        return Math.max(1L, (long) Math.ceil(inProgress / (parallelism * NANOS_PER_SECOND)));
+    }
+
+    /**
+     * @return Estimated CPU time of admitted simulations in progress
+     */
+    public long inProgress() {
+        lock.lock();
+        try {
+            return inProgress;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Simulations waiting for the budget
+     */
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
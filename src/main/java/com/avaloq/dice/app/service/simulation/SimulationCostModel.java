@@ -0,0 +1,122 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.Arrays;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.RollDiceService;
+import com.avaloq.dice.app.service.distribution.Convolutions;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Unit costs of simulation kernels. Starts with {@link SimulationCosts#REFERENCE} costs
+ * and replaces them with costs measured by a short micro-benchmark once the application is ready.
+ * Fork/join overhead is not measured.
+ */
+@Component
+public class SimulationCostModel {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationCostModel.class);
+
+    private static final int ROUNDS = 5;
+    private static final int OPERATIONS = 100_000;
+    private static final int CALIBRATION_DICE = 200;
+    private static final int CALIBRATION_SIDES = 6;
+
+    private final RollDiceService rollDiceService;
+    private final MultinomialRollSimulator multinomialRollSimulator;
+    private final boolean calibrationEnabled;
+
+    private volatile SimulationCosts costs = SimulationCosts.REFERENCE;
+
+    /**
+     * Consumes micro-benchmark results, so that measured code is not eliminated
+     */
+    private volatile long sink;
+
+    public SimulationCostModel(RollDiceService rollDiceService,
+                               MultinomialRollSimulator multinomialRollSimulator,
+                               SimulationProperties properties) {
+        this.rollDiceService = rollDiceService;
+        this.multinomialRollSimulator = multinomialRollSimulator;
+        this.calibrationEnabled = properties.isCalibrate();
+    }
+
+    /**
+     * @return current unit costs, calibrated ones if calibration has finished
+     */
+    public SimulationCosts getCosts() {
+        return costs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void calibrate() {
+        if (!calibrationEnabled) {
+            return;
+        }
+        costs = measure();
+        log.info("Simulation costs calibrated [ns]: perDie={}, packedDraw={}, packedGroup={}, aliasRoll={}, "
+                         + "aliasColumn={}, multinomialColumn={}",
+                 costs.getPerDie(), costs.getPackedDraw(), costs.getPackedGroup(), costs.getAliasRoll(),
+                 costs.getAliasColumn(), costs.getMultinomialColumn());
+    }
+
+    SimulationCosts measure() {
+        final DiceRandom random = rollDiceService.createRandom(System.nanoTime());
+
+        final double perDie = measure(OPERATIONS, () -> rollDiceService.sumOfDice(CALIBRATION_SIDES, OPERATIONS, random));
+
+        final PackedDiceSampler singleGroup = new PackedDiceSampler(2, CALIBRATION_SIDES);
+        final PackedDiceSampler fullDraw = new PackedDiceSampler(24, CALIBRATION_SIDES);
+        final double singleGroupDraw = measure(OPERATIONS, () -> sample(singleGroup, random));
+        final double fullDrawGroups = PackedDiceSampler.groupsPerRoll(24, CALIBRATION_SIDES);
+        final double fullDrawDraw = measure(OPERATIONS, () -> sample(fullDraw, random));
+        final double packedGroup = Math.max(0.0, (fullDrawDraw - singleGroupDraw) / (fullDrawGroups - 1));
+        final double packedDraw = Math.max(0.0, singleGroupDraw - packedGroup);
+
+        final double[] singleDice = new double[CALIBRATION_SIDES];
+        Arrays.fill(singleDice, 1.0 / CALIBRATION_SIDES);
+        final ExactDistribution distribution = ExactDistribution.of(CALIBRATION_DICE, CALIBRATION_SIDES,
+                                                                    Convolutions.power(singleDice, CALIBRATION_DICE));
+        final int columns = distribution.getMaxSum() - distribution.getMinSum() + 1;
+        final double exactDistribution = measure(1, () -> Convolutions.power(singleDice, CALIBRATION_DICE));
+
+        final double aliasColumn = exactDistribution / columns
+                + measure(columns, () -> new AliasDiceSampler(distribution));
+        final AliasDiceSampler alias = new AliasDiceSampler(distribution);
+        final double aliasRoll = measure(OPERATIONS, () -> sample(alias, random));
+
+        final double multinomialColumn = (exactDistribution
+                + measure(1, () -> multinomialRollSimulator.simulate(distribution, Integer.MAX_VALUE, random)))
+                / (columns * (Math.log(columns) / Math.log(2)));
+
+        return new SimulationCosts(perDie, packedDraw, packedGroup, aliasRoll, aliasColumn, multinomialColumn,
+                                   SimulationCosts.REFERENCE.getParallelOverhead());
+    }
+
+    private void sample(DiceSumSampler sampler, DiceRandom random) {
+        long sum = 0L;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += sampler.sample(random);
+        }
+        sink = sum;
+    }
+
+    /**
+     * @return best time of a single operation in nanoseconds
+     */
+    private static double measure(int operations, Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / operations;
+    }
+}
@@ -0,0 +1,86 @@
+package com.avaloq.dice.app.service.simulation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Unit costs of simulation kernels in nanoseconds, used to estimate the cost of a whole simulation
+ */
+@Getter
+@AllArgsConstructor
+public class SimulationCosts {
+
+    /**
+     * Costs measured on a reference machine, used until calibration finishes and for seeded simulations,
+     * so that the kernel selected for a seeded simulation - and its result - does not depend on the machine
+     */
+    public static final SimulationCosts REFERENCE = new SimulationCosts(3.0, 4.0, 3.0, 6.0, 60.0, 20.0, 100_000.0);
+
+    /**
+     * Single dice draw
+     */
+    private final double perDie;
+
+    /**
+     * Single packed generator draw
+     */
+    private final double packedDraw;
+
+    /**
+     * Single partial sums table lookup of a packed draw
+     */
+    private final double packedGroup;
+
+    /**
+     * Single roll drawn from alias table
+     */
+    private final double aliasRoll;
+
+    /**
+     * Alias table construction per column, including exact distribution
+     */
+    private final double aliasColumn;
+
+    /**
+     * Multinomial histogram draw per column and per log2 of columns, including exact distribution
+     */
+    private final double multinomialColumn;
+
+    /**
+     * Fork/join of parallel simulation
+     */
+    private final double parallelOverhead;
+
+    /**
+     * @param strategy simulation kernel
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @return estimated sequential cost in nanoseconds
+     */
+    public double estimate(SimulationStrategy strategy, int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        final double columns = (double) numberOfDice * (numberOfDiceSides - 1) + 1;
+        switch (strategy) {
+            case PACKED:
+                return (double) numberOfRolls
+                        * (PackedDiceSampler.drawsPerRoll(numberOfDice, numberOfDiceSides) * packedDraw
+                           + PackedDiceSampler.groupsPerRoll(numberOfDice, numberOfDiceSides) * packedGroup);
+            case ALIAS:
+                return columns * aliasColumn + (double) numberOfRolls * aliasRoll;
+            case MULTINOMIAL:
+                return columns * Math.max(1.0, Math.log(columns) / Math.log(2)) * multinomialColumn;
+            case PER_DIE:
+            default:
+                return (double) numberOfRolls * numberOfDice * perDie;
+        }
+    }
+
+    /**
+     * @param sequentialNanos estimated sequential cost
+     * @param workers amount of workers which may run simulation chunks at once
+     * @return estimated parallel cost in nanoseconds
+     */
+    public double estimateParallel(double sequentialNanos, int workers) {
+        return sequentialNanos / workers + parallelOverhead;
+    }
+}
@@ -0,0 +1,118 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import com.avaloq.dice.app.exception.SimulationCancelledException;
+import com.avaloq.dice.app.model.RollDice;
+
+/**
+ * Simulation submitted to run in the background and polled for its state.
+ * Updated from the worker thread, read from request threads - only the progress is kept, partial results are not materialized.
+ */
+public class SimulationJob implements SimulationProgress {
+
+    private final UUID id;
+    private final int numberOfDice;
+    private final int numberOfDiceSides;
+    private final int numberOfRolls;
+
+    private final AtomicReference<SimulationJobStatus> status = new AtomicReference<>(SimulationJobStatus.QUEUED);
+    private volatile boolean cancelled;
+    private volatile int rollsDone;
+    private volatile List<RollDice> result;
+    private volatile long finishedAt;
+
+    public SimulationJob(UUID id, int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        this.id = id;
+        this.numberOfDice = numberOfDice;
+        this.numberOfDiceSides = numberOfDiceSides;
+        this.numberOfRolls = numberOfRolls;
+    }
+
+    /**
+     * Requests cancellation - a queued job is cancelled at once, a running one before its next step.
+     * Has no effect on finished jobs.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (SimulationJobStatus.QUEUED == status.get()) {
+            finishedAt = System.nanoTime();
+            status.compareAndSet(SimulationJobStatus.QUEUED, SimulationJobStatus.CANCELLED);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onStart() {
+        status.compareAndSet(SimulationJobStatus.QUEUED, SimulationJobStatus.RUNNING);
+    }
+
+    @Override
+    public void onProgress(int rollsDone, Supplier<List<RollDice>> partialResult) {
+        this.rollsDone = rollsDone;
+    }
+
+    @Override
+    public void onResult(List<RollDice> result) {
+        this.result = result;
+        this.rollsDone = numberOfRolls;
+        finish(SimulationJobStatus.COMPLETED);
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+        finish(e instanceof SimulationCancelledException ? SimulationJobStatus.CANCELLED : SimulationJobStatus.FAILED);
+    }
+
+    private void finish(SimulationJobStatus finalStatus) {
+        finishedAt = System.nanoTime();
+        status.set(finalStatus);
+    }
+
+    /**
+     * @param now current {@link System#nanoTime()}
+     * @param retentionNanos time for which finished jobs are kept
+     * @return true if the job has finished longer than retention ago
+     */
+    public boolean isExpired(long now, long retentionNanos) {
+        return getStatus().isFinished() && now - finishedAt >= retentionNanos;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public int getNumberOfDice() {
+        return numberOfDice;
+    }
+
+    public int getNumberOfDiceSides() {
+        return numberOfDiceSides;
+    }
+
+    public int getNumberOfRolls() {
+        return numberOfRolls;
+    }
+
+    public SimulationJobStatus getStatus() {
+        return status.get();
+    }
+
+    public int getRollsDone() {
+        return rollsDone;
+    }
+
+    /**
+     * @return Simulation result once the job is completed, null otherwise
+     */
+    public List<RollDice> getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,36 @@
+package com.avaloq.dice.app.service.simulation;
+
+/**
+ * State of a simulation job run in the background
+ */
+public enum SimulationJobStatus {
+
+    /**
+     * Waiting for a worker thread
+     */
+    QUEUED,
+
+    /**
+     * Being simulated
+     */
+    RUNNING,
+
+    /**
+     * Simulated and stored, result available
+     */
+    COMPLETED,
+
+    /**
+     * Cancelled before all rolls were simulated, nothing stored
+     */
+    CANCELLED,
+
+    /**
+     * Simulation failed, nothing stored
+     */
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == CANCELLED || this == FAILED;
+    }
+}
@@ -0,0 +1,16 @@
+package com.avaloq.dice.app.service.simulation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Kernel selected for a simulation together with its estimated cost
+ */
+@Data
+@AllArgsConstructor
+public class SimulationPlan {
+
+    private SimulationStrategy strategy;
+    private boolean parallel;
+    private double estimatedNanos;
+}
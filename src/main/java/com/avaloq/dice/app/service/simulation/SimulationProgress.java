@@ -0,0 +1,43 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.avaloq.dice.app.model.RollDice;
+
+/**
+ * Observer of a simulation run in the background, rolled in steps
+ */
+public interface SimulationProgress {
+
+    /**
+     * Checked before every step
+     * @return true if remaining rolls should not be simulated, eg. the client has gone
+     */
+    boolean isCancelled();
+
+    /**
+     * Called once a worker thread picks the simulation up, before the first step
+     */
+    default void onStart() {
+    }
+
+    /**
+     * Called between steps, at most once per {@code dice.simulation.progress-interval}
+     * @param rollsDone rolls simulated so far
+     * @param partialResult result of rolls simulated so far, materialized only when requested during the call
+     */
+    void onProgress(int rollsDone, Supplier<List<RollDice>> partialResult);
+
+    /**
+     * Called once simulation is finished and its result stored
+     * @param result Simulation result
+     */
+    void onResult(List<RollDice> result);
+
+    /**
+     * Called when simulation has been cancelled or failed, nothing is stored
+     * @param e cause, {@link com.avaloq.dice.app.exception.SimulationCancelledException} if cancelled
+     */
+    void onFailure(Exception e);
+}
@@ -0,0 +1,27 @@
+package com.avaloq.dice.app.service.simulation;
+
+/**
+ * Simulation kernels
+ */
+public enum SimulationStrategy {
+
+    /**
+     * Every dice drawn separately
+     */
+    PER_DIE,
+
+    /**
+     * Several dice drawn with a single generator draw, see {@link PackedDiceSampler}
+     */
+    PACKED,
+
+    /**
+     * Whole roll sum drawn from alias table, see {@link AliasDiceSampler}
+     */
+    ALIAS,
+
+    /**
+     * Whole histogram drawn from the exact sum distribution, see {@link MultinomialRollSimulator}
+     */
+    MULTINOMIAL
+}
@@ -0,0 +1,169 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the cheapest simulation kernel according to {@link SimulationCostModel}.
+ * Selected strategies, their estimated costs and actual durations are published as
+ * {@code dice.simulation.strategy}, {@code dice.simulation.estimated} and {@code dice.simulation.duration} metrics.
+ */
+@Component
+public class SimulationStrategySelector {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationStrategySelector.class);
+
+    private final SimulationCostModel costModel;
+    private final ParallelRollSimulator parallelRollSimulator;
+    private final MultinomialRollSimulator multinomialRollSimulator;
+    private final AliasTableCache aliasTableCache;
+    private final int parallelThreshold;
+
+    private final Map<SimulationStrategy, Counter> sequentialSelections;
+    private final Map<SimulationStrategy, Counter> parallelSelections;
+    private final Map<SimulationStrategy, DistributionSummary> estimates;
+    private final Map<SimulationStrategy, Timer> sequentialDurations;
+    private final Map<SimulationStrategy, Timer> parallelDurations;
+
+    public SimulationStrategySelector(SimulationCostModel costModel,
+                                      ParallelRollSimulator parallelRollSimulator,
+                                      MultinomialRollSimulator multinomialRollSimulator,
+                                      AliasTableCache aliasTableCache,
+                                      MeterRegistry meterRegistry,
+                                      SimulationProperties properties) {
+        this.costModel = costModel;
+        this.parallelRollSimulator = parallelRollSimulator;
+        this.multinomialRollSimulator = multinomialRollSimulator;
+        this.aliasTableCache = aliasTableCache;
+        this.parallelThreshold = properties.getParallelThreshold();
+
+        this.sequentialSelections = perStrategy(strategy -> selections(meterRegistry, strategy, false));
+        this.parallelSelections = perStrategy(strategy -> selections(meterRegistry, strategy, true));
+        this.estimates = perStrategy(strategy -> DistributionSummary.builder("dice.simulation.estimated")
+                                                                    .baseUnit("nanoseconds")
+                                                                    .tag("strategy", strategy.name())
+                                                                    .register(meterRegistry));
+        this.sequentialDurations = perStrategy(strategy -> durations(meterRegistry, strategy, false));
+        this.parallelDurations = perStrategy(strategy -> durations(meterRegistry, strategy, true));
+    }
+
+    private static <M> Map<SimulationStrategy, M> perStrategy(Function<SimulationStrategy, M> meter) {
+        final Map<SimulationStrategy, M> meters = new EnumMap<>(SimulationStrategy.class);
+        for (SimulationStrategy strategy : SimulationStrategy.values()) {
+            meters.put(strategy, meter.apply(strategy));
+        }
+        return meters;
+    }
+
+    private static Counter selections(MeterRegistry meterRegistry, SimulationStrategy strategy, boolean parallel) {
+        return Counter.builder("dice.simulation.strategy")
+                      .tag("strategy", strategy.name())
+                      .tag("parallel", Boolean.toString(parallel))
+                      .register(meterRegistry);
+    }
+
+    private static Timer durations(MeterRegistry meterRegistry, SimulationStrategy strategy, boolean parallel) {
+        return Timer.builder("dice.simulation.duration")
+                    .tag("strategy", strategy.name())
+                    .tag("parallel", Boolean.toString(parallel))
+                    .register(meterRegistry);
+    }
+
+    /**
+     * Multinomial and alias kernels are candidates only above their configured thresholds,
+     * parallel execution only from configured rolls amount
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seeded true if simulation is seeded - reference costs are used then, so the result does not depend on the machine
+     * @return Selected kernel
+     */
+    public SimulationPlan select(int numberOfDice, int numberOfDiceSides, int numberOfRolls, boolean seeded) {
+        final SimulationCosts costs = seeded ? SimulationCosts.REFERENCE : costModel.getCosts();
+
+        final SimulationStrategy strategy = cheapest(costs, numberOfDice, numberOfDiceSides, numberOfRolls);
+        double estimated = costs.estimate(strategy, numberOfDice, numberOfDiceSides, numberOfRolls);
+
+        boolean parallel = false;
+        if (strategy != SimulationStrategy.MULTINOMIAL && numberOfRolls >= parallelThreshold) {
+            final double parallelEstimated = costs.estimateParallel(estimated, parallelRollSimulator.workers(numberOfRolls));
+            if (parallelEstimated < estimated) {
+                parallel = true;
+                estimated = parallelEstimated;
+            }
+        }
+
+        final SimulationPlan plan = new SimulationPlan(strategy, parallel, estimated);
+        if (log.isDebugEnabled()) {
+            log.debug("Simulation {}d{} x {}: {} {}, estimated {} us", numberOfDice, numberOfDiceSides, numberOfRolls,
+                      strategy, parallel ? "parallel" : "sequential", Math.round(estimated / 1000));
+        }
+        (parallel ? parallelSelections : sequentialSelections).get(strategy).increment();
+        estimates.get(strategy).record(estimated);
+        return plan;
+    }
+
+    /**
+     * Estimated CPU time of a simulation with the kernel {@link #select} would choose - the sequential estimate,
+     * as parallel execution shortens the simulation, not the work done. Nothing is logged nor published.
+     * @param numberOfDice dice number
+     * @param numberOfDiceSides dice sides number
+     * @param numberOfRolls simulations amount
+     * @param seeded true if simulation is seeded
+     * @return Estimated work in nanoseconds
+     */
+    public double estimateWork(int numberOfDice, int numberOfDiceSides, int numberOfRolls, boolean seeded) {
+        final SimulationCosts costs = seeded ? SimulationCosts.REFERENCE : costModel.getCosts();
+        return costs.estimate(cheapest(costs, numberOfDice, numberOfDiceSides, numberOfRolls),
+                              numberOfDice, numberOfDiceSides, numberOfRolls);
+    }
+
+    /**
+     * @param plan executed plan
+     * @param nanos actual simulation duration
+     */
+    public void record(SimulationPlan plan, long nanos) {
+        (plan.isParallel() ? parallelDurations : sequentialDurations).get(plan.getStrategy())
+                                                                     .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private SimulationStrategy cheapest(SimulationCosts costs, int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        SimulationStrategy strategy = SimulationStrategy.PER_DIE;
+        double estimated = costs.estimate(strategy, numberOfDice, numberOfDiceSides, numberOfRolls);
+        for (SimulationStrategy candidate : SimulationStrategy.values()) {
+            if (isCandidate(candidate, numberOfDice, numberOfDiceSides, numberOfRolls)) {
+                final double candidateEstimated = costs.estimate(candidate, numberOfDice, numberOfDiceSides, numberOfRolls);
+                if (candidateEstimated < estimated) {
+                    strategy = candidate;
+                    estimated = candidateEstimated;
+                }
+            }
+        }
+        return strategy;
+    }
+
+    private boolean isCandidate(SimulationStrategy strategy, int numberOfDice, int numberOfDiceSides, int numberOfRolls) {
+        switch (strategy) {
+            case PACKED:
+                return PackedDiceSampler.supports(numberOfDice, numberOfDiceSides);
+            case ALIAS:
+                return aliasTableCache.isApplicable(numberOfDice, numberOfDiceSides, numberOfRolls);
+            case MULTINOMIAL:
+                return multinomialRollSimulator.isApplicable(numberOfDice, numberOfRolls);
+            case PER_DIE:
+            default:
+                return true;
+        }
+    }
+}
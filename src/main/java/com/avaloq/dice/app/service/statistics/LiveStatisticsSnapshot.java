@@ -0,0 +1,27 @@
+package com.avaloq.dice.app.service.statistics;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Immutable view of {@link LiveStatisticsStore} totals, shared by all readers until the store changes
+ */
+@Value
+public class LiveStatisticsSnapshot {
+
+    /**
+     * Store version the snapshot was taken at
+     */
+    long version;
+
+    /**
+     * Totals per pair, ordered by dice number and sides number
+     */
+    List<PairTotals> totals;
+
+    /**
+     * Rolls of all simulations of all pairs
+     */
+    long totalRolls;
+}
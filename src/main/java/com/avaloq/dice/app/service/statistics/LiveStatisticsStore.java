@@ -0,0 +1,198 @@
+package com.avaloq.dice.app.service.statistics;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory statistics of all saved simulations, kept alongside the database.
+ * Warmed from simulation aggregates once they are rebuilt at startup, statistics are read from the database until then.
+ * Updated when the transaction saving a simulation commits, so rolled back simulations are never counted.
+ * Until the store is warm, commits of simulations are excluded from warm-up - a simulation is either committed before
+ * aggregates are read and counted in them, or committed after the store is warm and added.
+ * Once warm, writers only add to striped counters, readers get immutable snapshots, so neither of them takes a lock.
+ */
+@Component
+public class LiveStatisticsStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveStatisticsStore.class);
+
+    private static final Comparator<PairTotals> PAIR_ORDER =
+            Comparator.comparingInt(PairTotals::getDiceNo).thenComparingInt(PairTotals::getSidesNo);
+
+    private final RollDiceAggregateRepository rollDiceAggregateRepository;
+    private final boolean enabled;
+
+    private final Map<Long, PairCounters> pairs = new ConcurrentHashMap<>();
+    private final LongAdder totalRolls = new LongAdder();
+    private final AtomicLong version = new AtomicLong();
+    private final ReadWriteLock warming = new ReentrantReadWriteLock();
+
+    private volatile boolean warm;
+    private volatile LiveStatisticsSnapshot snapshot;
+
+    public LiveStatisticsStore(RollDiceAggregateRepository rollDiceAggregateRepository,
+                               StatisticsProperties properties) {
+        this.rollDiceAggregateRepository = rollDiceAggregateRepository;
+        this.enabled = properties.isLive();
+    }
+
+    /**
+     * Runs after {@link com.avaloq.dice.app.service.RollDiceStorageService#rebuildAggregates()}, which listens to the same event
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        final List<RollDiceAggregateEntity> aggregates;
+        warming.writeLock().lock();
+        try {
+            aggregates = rollDiceAggregateRepository.findAllWithResultAmounts();
+            aggregates.forEach(a -> add(a.getDiceNo(), a.getSidesNo(), a.getTotalSimulations(), a.getResultAmounts()));
+            warm = true;
+        } finally {
+            warming.writeLock().unlock();
+        }
+        log.info("Live statistics warmed with {} dice and sides pairs", aggregates.size());
+    }
+
+    /**
+     * @return true if store holds all saved simulations and may serve statistics
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Adds saved simulation after the current transaction commits, at once if there is no transaction.
+     * Before the store is warm, the commit waits for a warm-up in progress, so the simulation is either read by the warm-up
+     * or added once it has finished - simulations committed before the warm-up are counted in aggregates it is warmed from.
+     * @param diceNo dice number
+     * @param sidesNo sides number
+     * @param rollDiceResults Simulation result
+     */
+    public void add(int diceNo, int sidesNo, List<RollDice> rollDiceResults) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (warm) {
+                apply(diceNo, sidesNo, rollDiceResults);
+                return;
+            }
+            warming.readLock().lock();
+            try {
+                apply(diceNo, sidesNo, rollDiceResults);
+            } finally {
+                warming.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (!warm) {
+                    warming.readLock().lock();
+                    locked = true;
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                apply(diceNo, sidesNo, rollDiceResults);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    locked = false;
+                    warming.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    private void apply(int diceNo, int sidesNo, List<RollDice> rollDiceResults) {
+        if (!warm) {
+            return;
+        }
+        final PairCounters counters = counters(diceNo, sidesNo);
+        counters.addSimulations(1L);
+        for (RollDice result : rollDiceResults) {
+            counters.addRolls(result.getResult(), result.getAmount());
+            totalRolls.add(result.getAmount());
+        }
+        version.incrementAndGet();
+    }
+
+    private void add(int diceNo, int sidesNo, long simulations, Map<Integer, Long> amounts) {
+        final PairCounters counters = counters(diceNo, sidesNo);
+        counters.addSimulations(simulations);
+        amounts.forEach((sum, amount) -> {
+            counters.addRolls(sum, amount);
+            totalRolls.add(amount);
+        });
+        version.incrementAndGet();
+    }
+
+    private PairCounters counters(int diceNo, int sidesNo) {
+        return pairs.computeIfAbsent(key(diceNo, sidesNo), k -> new PairCounters(diceNo, sidesNo));
+    }
+
+    private static long key(int diceNo, int sidesNo) {
+        return ((long) diceNo << 32) | (sidesNo & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Totals snapshot, rebuilt only if any simulation has been added since the previous one
+     */
+    public LiveStatisticsSnapshot snapshot() {
+        final long current = version.get();
+        final LiveStatisticsSnapshot cached = snapshot;
+        if (null != cached && cached.getVersion() == current) {
+            return cached;
+        }
+        final List<PairTotals> totals = pairs.values().stream()
+                                             .map(PairCounters::totals)
+                                             .sorted(PAIR_ORDER)
+                                             .collect(Collectors.toList());
+        final LiveStatisticsSnapshot taken = new LiveStatisticsSnapshot(current, Collections.unmodifiableList(totals), totalRolls.sum());
+        snapshot = taken;
+        return taken;
+    }
+
+    /**
+     * @param diceNo dice number
+     * @param sidesNo sides number
+     * @return Snapshot of rolls amount per sum of given pair, ordered by sum - empty if pair has not been simulated
+     */
+    public Map<Integer, Long> amounts(int diceNo, int sidesNo) {
+        final PairCounters counters = pairs.get(key(diceNo, sidesNo));
+        return null != counters ? counters.amounts() : Collections.emptyMap();
+    }
+}
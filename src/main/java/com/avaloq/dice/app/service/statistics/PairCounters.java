@@ -0,0 +1,71 @@
+package com.avaloq.dice.app.service.statistics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a single dice number and sides number pair.
+ * Totals are striped {@link LongAdder}s, sums are counted in an {@link AtomicLongArray} indexed by {@code sum - diceNo},
+ * or in a map of adders when sum range is too wide - none of them is locked by writers.
+ */
+class PairCounters {
+
+    /**
+     * Maximal amount of distinct sums counted in an array (512 kB of counters)
+     */
+    static final int MAX_DENSE_RANGE = 1 << 16;
+
+    private final int diceNo;
+    private final int sidesNo;
+    private final LongAdder simulations = new LongAdder();
+    private final LongAdder rolls = new LongAdder();
+    private final AtomicLongArray denseAmounts;
+    private final Map<Integer, LongAdder> sparseAmounts;
+
+    PairCounters(int diceNo, int sidesNo) {
+        this.diceNo = diceNo;
+        this.sidesNo = sidesNo;
+        final long range = (long) diceNo * (sidesNo - 1) + 1;
+        this.denseAmounts = range <= MAX_DENSE_RANGE ? new AtomicLongArray((int) range) : null;
+        this.sparseAmounts = null == denseAmounts ? new ConcurrentHashMap<>() : null;
+    }
+
+    void addSimulations(long amount) {
+        simulations.add(amount);
+    }
+
+    void addRolls(int sum, long amount) {
+        rolls.add(amount);
+        if (null != denseAmounts) {
+            denseAmounts.addAndGet(sum - diceNo, amount);
+        } else {
+            sparseAmounts.computeIfAbsent(sum, s -> new LongAdder()).add(amount);
+        }
+    }
+
+    PairTotals totals() {
+        return new PairTotals(diceNo, sidesNo, simulations.sum(), rolls.sum());
+    }
+
+    /**
+     * @return Amount of rolls per sum, ordered by sum, only sums rolled at least once
+     */
+    Map<Integer, Long> amounts() {
+        final TreeMap<Integer, Long> amounts = new TreeMap<>();
+        if (null != denseAmounts) {
+            for (int i = 0; i < denseAmounts.length(); i++) {
+                final long amount = denseAmounts.get(i);
+                if (amount > 0) {
+                    amounts.put(diceNo + i, amount);
+                }
+            }
+        } else {
+            sparseAmounts.forEach((sum, amount) -> amounts.put(sum, amount.sum()));
+        }
+        return Collections.unmodifiableMap(amounts);
+    }
+}
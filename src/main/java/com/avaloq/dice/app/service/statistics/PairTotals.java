@@ -0,0 +1,15 @@
+package com.avaloq.dice.app.service.statistics;
+
+import lombok.Value;
+
+/**
+ * Totals of a single dice number and sides number pair at the moment of snapshot
+ */
+@Value
+public class PairTotals {
+
+    int diceNo;
+    int sidesNo;
+    long totalSimulations;
+    long totalRolls;
+}
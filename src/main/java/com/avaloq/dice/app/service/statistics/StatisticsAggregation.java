@@ -0,0 +1,17 @@
+package com.avaloq.dice.app.service.statistics;
+
+/**
+ * Place where statistics read from the database are aggregated
+ */
+public enum StatisticsAggregation {
+
+    /**
+     * Entities are read and aggregated in Java - single place for business logic
+     */
+    JAVA,
+
+    /**
+     * Aggregated with {@code GROUP BY} queries, only aggregated rows are read
+     */
+    DATABASE
+}
@@ -0,0 +1,62 @@
+package com.avaloq.dice.app.service.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Total rolls of all saved simulations, kept in memory so relative distribution does not sum rolls of all stored simulations.
+ * Counted from stored simulations once at startup - before the application accepts requests,
+ * then updated only when saving transactions commit, so saving does not update any row shared by all pairs.
+ */
+@Component
+public class TotalRollsCounter {
+
+    private final RollDiceRepository rollDiceRepository;
+
+    private final RollDiceItemRepository rollDiceItemRepository;
+
+    private final AtomicLong totalRolls = new AtomicLong();
+
+    public TotalRollsCounter(RollDiceRepository rollDiceRepository, RollDiceItemRepository rollDiceItemRepository) {
+        this.rollDiceRepository = rollDiceRepository;
+        this.rollDiceItemRepository = rollDiceItemRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        final Long itemRolls = rollDiceItemRepository.sumAllSimulationRolls();
+        final Long compactRolls = rollDiceRepository.sumCompactRolls();
+        totalRolls.set((null != itemRolls ? itemRolls : 0L) + (null != compactRolls ? compactRolls : 0L));
+    }
+
+    /**
+     * @return Total rolls of all committed simulations
+     */
+    public long get() {
+        return totalRolls.get();
+    }
+
+    /**
+     * Adds rolls of saved simulations once the current transaction commits, nothing is added when it rolls back
+     * @param rolls rolls of saved simulations
+     */
+    public void add(long rolls) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            totalRolls.addAndGet(rolls);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                totalRolls.addAndGet(rolls);
+            }
+        });
+    }
+}
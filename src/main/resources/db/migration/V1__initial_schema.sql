@@ -0,0 +1,40 @@
+-- Schema previously generated by Hibernate from entities
+
+create sequence roll_dice_result_seq start with 1 increment by 50;
+create sequence roll_dice_result_item_seq start with 1 increment by 1000;
+
+create table roll_dice_result (
+    id bigint not null,
+    dice_no integer not null,
+    sides_no integer not null,
+    histogram blob,
+    rolls bigint,
+    simulations bigint not null,
+    primary key (id)
+);
+
+create table roll_dice_result_item (
+    id bigint not null,
+    roll_dice_result_id bigint,
+    result integer not null,
+    amount bigint not null,
+    primary key (id),
+    constraint fk_roll_dice_result_item_result foreign key (roll_dice_result_id) references roll_dice_result (id)
+);
+
+create table roll_dice_aggregate (
+    dice_no integer not null,
+    sides_no integer not null,
+    total_simulations bigint not null,
+    total_rolls bigint not null,
+    primary key (dice_no, sides_no)
+);
+
+create table roll_dice_aggregate_item (
+    dice_no integer not null,
+    sides_no integer not null,
+    result integer not null,
+    amount bigint not null,
+    primary key (dice_no, sides_no, result),
+    constraint fk_roll_dice_aggregate_item_aggregate foreign key (dice_no, sides_no) references roll_dice_aggregate (dice_no, sides_no)
+);
@@ -0,0 +1,6 @@
+-- Simulations of a dice and sides pair, in id order - distribution lookups and compaction of the pair
+create index idx_roll_dice_result_pair on roll_dice_result (dice_no, sides_no, id);
+
+-- Sums and amounts of a simulation read from the index only, without touching item rows
+-- Leading column also serves joins from roll_dice_result and deletes of compacted simulations
+create index idx_roll_dice_result_item_covering on roll_dice_result_item (roll_dice_result_id, result, amount);
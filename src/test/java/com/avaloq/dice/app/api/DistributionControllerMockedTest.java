@@ -0,0 +1,52 @@
+package com.avaloq.dice.app.api;
+
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(DistributionController.class)
+public class DistributionControllerMockedTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ExactDistributionService service;
+
+    @Test
+    void Exact_Distribution_OK() throws Exception {
+        when(service.exactDistribution(anyInt(), anyInt())).thenReturn(ExactDistribution.of(1, 4, new double[] {0.25, 0.25, 0.25, 0.25}));
+
+        this.mockMvc.perform(get("/distribution/exact").param("dice", "1").param("sides", "4"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("[{\"sum\":1,\"probability\":0.25},{\"sum\":2,\"probability\":0.25},"
+                                                  + "{\"sum\":3,\"probability\":0.25},{\"sum\":4,\"probability\":0.25}]"));
+    }
+
+    @Test
+    void Exact_Distribution_Invalid_Input_FAIL() throws Exception {
+        when(service.exactDistribution(anyInt(), anyInt())).thenThrow(new DiceRollInputDataValidationException());
+
+        this.mockMvc.perform(get("/distribution/exact").param("dice", "0").param("sides", "4"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void Exact_Distribution_Missing_sides_query_param_FAIL() throws Exception {
+        this.mockMvc.perform(get("/distribution/exact").param("dice", "1"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,9 +1,19 @@
 package com.avaloq.dice.app.api;
 
 import java.util.Collections;
+import java.util.List;
 
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.exception.SimulationOverloadedException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import com.avaloq.dice.app.model.BatchRollResult;
+import com.avaloq.dice.app.model.RollConfiguration;
 import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.service.BackgroundSimulationService;
+import com.avaloq.dice.app.service.BatchRollService;
+import com.avaloq.dice.app.service.RollAmountConsumer;
 import com.avaloq.dice.app.service.RollMultipleDiceService;
+import com.avaloq.dice.app.service.simulation.SimulationProgress;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,11 +21,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(RollDiceController.class)
@@ -27,9 +47,15 @@ public class RollDiceControllerMockedTest {
     @MockBean
     private RollMultipleDiceService service;
 
+    @MockBean
+    private BackgroundSimulationService backgroundSimulationService;
+
+    @MockBean
+    private BatchRollService batchRollService;
+
     @Test
     void Roll_Dice_Empty_Result_OK() throws Exception {
-        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenReturn(Collections.emptyList());
 
         this.mockMvc.perform(post("/roll").param("dice", "1").param("sides","1").param("rolls", "1"))
                     .andExpect(status().isOk())
@@ -39,7 +65,7 @@ public class RollDiceControllerMockedTest {
 
     @Test
     void Roll_Dice_Full_Result_OK() throws Exception {
-        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt())).thenReturn(Lists.list(new RollDice(10, 1L), new RollDice(4, 4L)));
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenReturn(Lists.list(new RollDice(10, 1L), new RollDice(4, 4L)));
 
         this.mockMvc.perform(post("/roll").param("dice", "1").param("sides","1").param("rolls", "1"))
                 .andExpect(status().isOk())
@@ -47,9 +73,163 @@ public class RollDiceControllerMockedTest {
                 .andExpect(content().json("[{\"result\":10,\"amount\":1},{\"result\":4,\"amount\":4}]"));
     }
 
+    @Test
+    void Roll_Dice_Seed_OK() throws Exception {
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), eq(42L))).thenReturn(Lists.list(new RollDice(4, 1L)));
+
+        this.mockMvc.perform(post("/roll").param("dice", "1").param("sides","4").param("rolls", "1").param("seed", "42"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"result\":4,\"amount\":1}]"));
+    }
+
+    @Test
+    void Roll_Dice_Ndjson_Accept_OK() throws Exception {
+        doAnswer(invocation -> {
+            final RollAmountConsumer consumer = invocation.getArgument(4);
+            consumer.accept(4, 4L);
+            consumer.accept(10, 1L);
+            return null;
+        }).when(service).rollMultipleDice(anyInt(), anyInt(), anyInt(), any(), any(RollAmountConsumer.class));
+
+        final MvcResult result = this.mockMvc.perform(post("/roll").param("dice", "1").param("sides","1").param("rolls", "1")
+                                                                  .accept(RollDiceController.APPLICATION_NDJSON))
+                                             .andExpect(request().asyncStarted())
+                                             .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(RollDiceController.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"result\":4,\"amount\":4}\n{\"result\":10,\"amount\":1}\n"));
+    }
+
+    @Test
+    void Roll_Dice_Ndjson_Stream_Param_OK() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<RollAmountConsumer>getArgument(4).accept(4, 4L);
+            return null;
+        }).when(service).rollMultipleDice(anyInt(), anyInt(), anyInt(), any(), any(RollAmountConsumer.class));
+
+        final MvcResult result = this.mockMvc.perform(post("/roll").param("dice", "1").param("sides","4").param("rolls", "4")
+                                                                  .param("stream", "true"))
+                                             .andExpect(request().asyncStarted())
+                                             .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(RollDiceController.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"result\":4,\"amount\":4}\n"));
+    }
+
+    @Test
+    void Roll_Dice_Ndjson_Validation_FAIL() throws Exception {
+        doThrow(DiceRollInputDataValidationException.class).when(service).validateRollDice(0, 4, 4);
+
+        this.mockMvc.perform(post("/roll").param("dice", "0").param("sides","4").param("rolls", "4").param("stream", "true"))
+                .andExpect(status().isBadRequest())
+                .andExpect(request().asyncNotStarted());
+    }
+
+    @Test
+    void Roll_Dice_Ndjson_Queue_Full_FAIL() throws Exception {
+        doThrow(new SimulationOverloadedException(true, 3L))
+                .when(service).rollMultipleDice(anyInt(), anyInt(), anyInt(), any(), any(RollAmountConsumer.class));
+
+        final MvcResult result = this.mockMvc.perform(post("/roll").param("dice", "1000").param("sides","6").param("rolls", "2147483647")
+                                                                  .param("stream", "true"))
+                                             .andExpect(request().asyncStarted())
+                                             .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"));
+    }
+
+    @Test
+    void Roll_Dice_Queue_Full_FAIL() throws Exception {
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenThrow(new SimulationOverloadedException(true, 3L));
+
+        this.mockMvc.perform(post("/roll").param("dice", "1000").param("sides","6").param("rolls", "2147483647"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"));
+    }
+
+    @Test
+    void Roll_Dice_Admission_Timeout_FAIL() throws Exception {
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenThrow(new SimulationOverloadedException(false, 7L));
+
+        this.mockMvc.perform(post("/roll").param("dice", "1000").param("sides","6").param("rolls", "2147483647"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"));
+    }
+
+    @Test
+    void Roll_Dice_Progress_Events_OK() throws Exception {
+        doAnswer(invocation -> {
+            final SimulationProgress progress = invocation.getArgument(4);
+            progress.onProgress(2, () -> Lists.list(new RollDice(4, 2L)));
+            progress.onResult(Lists.list(new RollDice(4, 4L)));
+            return null;
+        }).when(backgroundSimulationService).start(anyInt(), anyInt(), anyInt(), any(), any());
+
+        final MvcResult result = this.mockMvc.perform(get("/roll/stream").param("dice", "1").param("sides","4").param("rolls", "4")
+                                                                        .accept(MediaType.TEXT_EVENT_STREAM))
+                                             .andExpect(request().asyncStarted())
+                                             .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+        assertThat(result.getResponse().getContentAsString())
+                .contains("event:progress\ndata:{\"rollsDone\":2,\"rolls\":4,")
+                .contains("\"histogram\":[{\"result\":4,\"amount\":2}]")
+                .contains("event:result\ndata:[{\"result\":4,\"amount\":4}]");
+    }
+
+    @Test
+    void Roll_Dice_Progress_Validation_FAIL() throws Exception {
+        doThrow(DiceRollInputDataValidationException.class).when(backgroundSimulationService).start(anyInt(), anyInt(), anyInt(), any(), any());
+
+        this.mockMvc.perform(get("/roll/stream").param("dice", "0").param("sides","4").param("rolls", "4"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void Roll_Dice_Progress_Rejected_FAIL() throws Exception {
+        doThrow(SimulationRejectedException.class).when(backgroundSimulationService).start(anyInt(), anyInt(), anyInt(), any(), any());
+
+        this.mockMvc.perform(get("/roll/stream").param("dice", "1").param("sides","4").param("rolls", "4"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void Roll_Dice_Batch_OK() throws Exception {
+        final RollConfiguration valid = new RollConfiguration(1, 4, 4, 42L);
+        final RollConfiguration missing = new RollConfiguration(null, 4, 4, null);
+        when(batchRollService.rollBatch(List.of(valid, missing)))
+                .thenReturn(List.of(new BatchRollResult(valid, Lists.list(new RollDice(4, 4L)), null),
+                                    new BatchRollResult(missing, null, "dice, sides and rolls are required")));
+
+        this.mockMvc.perform(post("/roll/batch").contentType(MediaType.APPLICATION_JSON)
+                                                .content("[{\"dice\":1,\"sides\":4,\"rolls\":4,\"seed\":42},{\"sides\":4,\"rolls\":4}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("[{\"dice\":1,\"sides\":4,\"rolls\":4,\"seed\":42,\"error\":null,"
+                                                  + "\"result\":[{\"result\":4,\"amount\":4}]},"
+                                                  + "{\"dice\":null,\"sides\":4,\"rolls\":4,"
+                                                  + "\"error\":\"dice, sides and rolls are required\",\"result\":null}]"));
+    }
+
+    @Test
+    void Roll_Dice_Batch_Too_Large_FAIL() throws Exception {
+        when(batchRollService.rollBatch(any())).thenThrow(DiceRollInputDataValidationException.class);
+
+        this.mockMvc.perform(post("/roll/batch").contentType(MediaType.APPLICATION_JSON).content("[{\"dice\":1,\"sides\":4,\"rolls\":4}]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void Roll_Dice__Missing_dice_query_param_FAIL() throws Exception {
-        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenReturn(Collections.emptyList());
 
         this.mockMvc.perform(post("/roll").param("sides","1").param("rolls", "1"))
                 .andExpect(status().isBadRequest());
@@ -57,7 +237,7 @@ public class RollDiceControllerMockedTest {
 
     @Test
     void Roll_Dice__Missing_sides_query_param_FAIL() throws Exception {
-        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenReturn(Collections.emptyList());
 
         this.mockMvc.perform(post("/roll").param("dice","1").param("rolls", "1"))
                 .andExpect(status().isBadRequest());
@@ -65,7 +245,7 @@ public class RollDiceControllerMockedTest {
 
     @Test
     void Roll_Dice__Missing_rolls_query_param_FAIL() throws Exception {
-        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(service.rollMultipleDice(anyInt(), anyInt(), anyInt(), any())).thenReturn(Collections.emptyList());
 
         this.mockMvc.perform(post("/roll").param("dice","1").param("sides", "1"))
                 .andExpect(status().isBadRequest());
@@ -0,0 +1,109 @@
+package com.avaloq.dice.app.api;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.exception.SimulationJobNotFoundException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.service.SimulationJobService;
+import com.avaloq.dice.app.service.simulation.SimulationJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(SimulationJobController.class)
+public class SimulationJobControllerMockedTest {
+
+    private static final UUID ID = UUID.fromString("3f1c2a4e-7d0b-4c55-9a9e-0b4f6f3c2d11");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SimulationJobService service;
+
+    @Test
+    void Job_Submit_OK() throws Exception {
+        when(service.submit(2, 6, 100, 42L)).thenReturn(new SimulationJob(ID, 2, 6, 100));
+
+        this.mockMvc.perform(post("/roll/jobs").param("dice", "2").param("sides", "6").param("rolls", "100").param("seed", "42"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/roll/jobs/" + ID))
+                .andExpect(content().json("{\"id\":\"" + ID + "\",\"status\":\"QUEUED\",\"dice\":2,\"sides\":6,"
+                                                  + "\"rolls\":100,\"rollsDone\":0,\"result\":null}"));
+    }
+
+    @Test
+    void Job_Running_OK() throws Exception {
+        final SimulationJob job = new SimulationJob(ID, 2, 6, 100);
+        job.onStart();
+        job.onProgress(40, List::of);
+        when(service.find(ID)).thenReturn(job);
+
+        this.mockMvc.perform(get("/roll/jobs/" + ID))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"status\":\"RUNNING\",\"rolls\":100,\"rollsDone\":40,\"result\":null}"));
+    }
+
+    @Test
+    void Job_Completed_OK() throws Exception {
+        final SimulationJob job = new SimulationJob(ID, 1, 4, 4);
+        job.onResult(List.of(new RollDice(4, 4L)));
+        when(service.find(ID)).thenReturn(job);
+
+        this.mockMvc.perform(get("/roll/jobs/" + ID))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"status\":\"COMPLETED\",\"rollsDone\":4,\"result\":[{\"result\":4,\"amount\":4}]}"));
+    }
+
+    @Test
+    void Job_Cancel_OK() throws Exception {
+        final SimulationJob job = new SimulationJob(ID, 2, 6, 100);
+        job.cancel();
+        when(service.cancel(ID)).thenReturn(job);
+
+        this.mockMvc.perform(delete("/roll/jobs/" + ID))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"status\":\"CANCELLED\"}"));
+    }
+
+    @Test
+    void Job_Not_Found_FAIL() throws Exception {
+        when(service.find(any())).thenThrow(SimulationJobNotFoundException.class);
+        when(service.cancel(any())).thenThrow(SimulationJobNotFoundException.class);
+
+        this.mockMvc.perform(get("/roll/jobs/" + ID)).andExpect(status().isNotFound());
+        this.mockMvc.perform(delete("/roll/jobs/" + ID)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void Job_Validation_FAIL() throws Exception {
+        when(service.submit(eq(0), anyInt(), anyInt(), any())).thenThrow(DiceRollInputDataValidationException.class);
+
+        this.mockMvc.perform(post("/roll/jobs").param("dice", "0").param("sides", "6").param("rolls", "100"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void Job_Rejected_FAIL() throws Exception {
+        when(service.submit(anyInt(), anyInt(), anyInt(), any())).thenThrow(SimulationRejectedException.class);
+
+        this.mockMvc.perform(post("/roll/jobs").param("dice", "2").param("sides", "6").param("rolls", "100"))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
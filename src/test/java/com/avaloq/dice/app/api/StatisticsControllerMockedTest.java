@@ -1,6 +1,5 @@
 package com.avaloq.dice.app.api;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 import com.avaloq.dice.app.exception.NoSimulationsException;
@@ -38,9 +37,9 @@ public class StatisticsControllerMockedTest {
             TotalNumberSimulation.builder().diceNo(3).sidesNo(6).totalRolls(50L).totalSimulations(10L).build());
 
     private static final List<RollDistribution> distribution = Lists.list(
-            RollDistribution.builder().sum(5).percentage(BigDecimal.valueOf(5.1)).build(),
-            RollDistribution.builder().sum(6).percentage(BigDecimal.valueOf(15.5)).build(),
-            RollDistribution.builder().sum(12).percentage(BigDecimal.valueOf(25.6)).build());
+            RollDistribution.builder().sum(5).scaledPercentage(510L).build(),
+            RollDistribution.builder().sum(6).scaledPercentage(1550L).build(),
+            RollDistribution.builder().sum(12).scaledPercentage(2560L).build());
 
     @Test
     void Statistics_Exeption_On_Statistics_Retrival_Result_FAIL() throws Exception {
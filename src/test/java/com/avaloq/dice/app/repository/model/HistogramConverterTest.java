@@ -0,0 +1,74 @@
+package com.avaloq.dice.app.repository.model;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HistogramConverterTest {
+
+    private final HistogramConverter converter = new HistogramConverter();
+
+    private Map<Integer, Long> roundTrip(Map<Integer, Long> amounts) {
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(amounts));
+    }
+
+    @Test
+    void Convert_Dense_OK() {
+        final Map<Integer, Long> amounts = new TreeMap<>();
+        IntStream.rangeClosed(100, 600).filter(sum -> sum % 7 != 0).forEach(sum -> amounts.put(sum, (long) sum * sum));
+
+        final byte[] encoded = converter.convertToDatabaseColumn(amounts);
+
+        assertThat(encoded[0]).isEqualTo(HistogramCodec.DENSE);
+        assertThat(converter.convertToEntityAttribute(encoded)).isEqualTo(amounts);
+    }
+
+    @Test
+    void Convert_Dense_Single_Byte_Per_Sum_OK() {
+        final Map<Integer, Long> amounts = new TreeMap<>();
+        IntStream.rangeClosed(100, 600).forEach(sum -> amounts.put(sum, 127L));
+
+        assertThat(converter.convertToDatabaseColumn(amounts)).hasSizeLessThan(501 + 8);
+    }
+
+    @Test
+    void Convert_Sparse_OK() {
+        final Map<Integer, Long> amounts = Map.of(5000, 1L, 123_456, 2L, 499_999, Long.MAX_VALUE);
+
+        final byte[] encoded = converter.convertToDatabaseColumn(amounts);
+
+        assertThat(encoded[0]).isEqualTo(HistogramCodec.SPARSE);
+        assertThat(converter.convertToEntityAttribute(encoded)).isEqualTo(amounts);
+    }
+
+    @Test
+    void Convert_Random_OK() {
+        final Random random = new Random(5L);
+        for (int i = 0; i < 1000; i++) {
+            final Map<Integer, Long> amounts = new TreeMap<>();
+            final int lowest = random.nextInt(100_000) - 50_000;
+            final int range = 1 + random.nextInt(random.nextBoolean() ? 50 : 100_000);
+            IntStream.range(0, random.nextInt(50)).forEach(e -> amounts.put(lowest + random.nextInt(range), random.nextLong() >>> 1));
+
+            assertThat(roundTrip(amounts)).isEqualTo(amounts);
+        }
+    }
+
+    @Test
+    void Convert_Empty_And_Null_OK() {
+        assertThat(roundTrip(Map.of())).isEmpty();
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+
+    @Test
+    void Convert_Negative_Amount_FAIL() {
+        assertThatThrownBy(() -> converter.convertToDatabaseColumn(Map.of(1, -1L))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
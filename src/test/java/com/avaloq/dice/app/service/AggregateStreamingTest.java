@@ -0,0 +1,88 @@
+package com.avaloq.dice.app.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.RollDiceItemJdbcRepository;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
+import org.hibernate.Session;
+import org.hibernate.stat.SessionStatistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Aggregates rebuilt from streamed rows must not hold stored simulations in memory, regardless of their amount
+ */
+@DataJpaTest
+public class AggregateStreamingTest {
+
+    private static final int DICE = 4;
+    private static final int SIDES = 13;
+    private static final List<RollDice> RESULT = IntStream.rangeClosed(DICE, DICE * SIDES)
+                                                          .mapToObj(sum -> new RollDice(sum, 2L))
+                                                          .collect(Collectors.toList());
+
+    @Autowired
+    RollDiceRepository rollDiceRepository;
+
+    @Autowired
+    RollDiceItemRepository rollDiceItemRepository;
+
+    @Autowired
+    RollDiceAggregateRepository rollDiceAggregateRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000})
+    void Aggregate_Streamed_Flat_Heap_OK(int items) {
+        final RollDiceStorageService storage = new RollDiceStorageService(rollDiceRepository, rollDiceAggregateRepository, rollDiceItemRepository,
+                                                                          new RollDiceItemJdbcRepository(jdbcTemplate, entityManagerFactory),
+                                                                          new TotalRollsCounter(rollDiceRepository, rollDiceItemRepository),
+                                                                          new LiveStatisticsStore(rollDiceAggregateRepository, new StatisticsProperties()),
+                                                                          new StatisticsProperties(), new PersistenceProperties());
+        final int simulations = (items + RESULT.size() - 1) / RESULT.size();
+        for (int stored = 0; stored < simulations; stored += 1000) {
+            storage.saveAll(Collections.nCopies(Math.min(1000, simulations - stored), new SimulationResult(DICE, SIDES, RESULT)));
+            entityManager.clear();
+        }
+        final SessionStatistics persistenceContext = entityManager.getEntityManager().unwrap(Session.class).getStatistics();
+
+        final List<RollDiceAggregateEntity> aggregates = storage.aggregateStreamed();
+
+        // nothing read has been kept in persistence context, only aggregates themselves grow with stored data
+        assertThat(persistenceContext.getEntityCount()).isZero();
+        assertThat(persistenceContext.getCollectionCount()).isZero();
+        assertThat(aggregates).hasSize(1);
+        assertThat(aggregates.get(0).getTotalSimulations()).isEqualTo(simulations);
+        assertThat(aggregates.get(0).getTotalRolls()).isEqualTo(2L * RESULT.size() * simulations);
+        assertThat(aggregates.get(0).getResultAmounts()).hasSize(RESULT.size())
+                                                        .containsValue(2L * simulations);
+    }
+}
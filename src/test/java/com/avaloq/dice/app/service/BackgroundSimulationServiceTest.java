@@ -0,0 +1,172 @@
+package com.avaloq.dice.app.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.SimulationCancelledException;
+import com.avaloq.dice.app.exception.SimulationOverloadedException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.service.simulation.RollHistogram;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import com.avaloq.dice.app.service.simulation.SimulationProgress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BackgroundSimulationServiceTest {
+
+    RollMultipleDiceService rollMultipleDiceService;
+    SimulationAdmission simulationAdmission;
+    BackgroundSimulationService service;
+
+    @BeforeEach
+    void setUp() {
+        rollMultipleDiceService = mock(RollMultipleDiceService.class);
+        when(rollMultipleDiceService.simulate(anyInt(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            final RollHistogram histogram = new RollHistogram(invocation.getArgument(0), invocation.getArgument(1));
+            histogram.add(invocation.getArgument(0), invocation.<Integer>getArgument(2));
+            return histogram;
+        });
+
+        final SimulationProperties properties = new SimulationProperties();
+        properties.setProgressStep(10);
+        properties.setProgressInterval(Duration.ZERO);
+        properties.setWorkerThreads(1);
+        properties.setWorkerQueueCapacity(1);
+        simulationAdmission = mock(SimulationAdmission.class);
+        when(simulationAdmission.admit(anyLong(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        service = new BackgroundSimulationService(rollMultipleDiceService, simulationAdmission, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void Roll_In_Steps_Saved_Once_OK() {
+        final SimulationProgress progress = mock(SimulationProgress.class);
+
+        final List<RollDice> result = service.rollMultipleDice(2, 6, 35, null, progress);
+
+        assertThat(result).containsExactly(new RollDice(2, 35L));
+        verify(rollMultipleDiceService, times(3)).simulate(2, 6, 10, null);
+        verify(rollMultipleDiceService).simulate(2, 6, 5, null);
+        verify(progress).onProgress(eq(10), any());
+        verify(progress).onProgress(eq(20), any());
+        verify(progress).onProgress(eq(30), any());
+        verify(progress, times(3)).onProgress(anyInt(), any());
+        verify(rollMultipleDiceService).saveRollDiceData(2, 6, result);
+    }
+
+    @Test
+    void Roll_Steps_Admitted_OK() {
+        when(simulationAdmission.cost(2, 6, 10, false)).thenReturn(100L);
+        when(simulationAdmission.cost(2, 6, 5, false)).thenReturn(50L);
+
+        service.rollMultipleDice(2, 6, 35, null, mock(SimulationProgress.class));
+
+        verify(simulationAdmission, times(3)).admit(eq(100L), any());
+        verify(simulationAdmission).admit(eq(50L), any());
+    }
+
+    @Test
+    void Roll_Step_Shed_Not_Saved_FAIL() {
+        doThrow(new SimulationOverloadedException(true, 1L)).when(simulationAdmission).admit(anyLong(), any());
+
+        assertThatThrownBy(() -> service.rollMultipleDice(2, 6, 35, null, mock(SimulationProgress.class)))
+                .isInstanceOf(SimulationOverloadedException.class);
+        verify(rollMultipleDiceService, never()).saveRollDiceData(anyInt(), anyInt(), anyList());
+    }
+
+    @Test
+    void Roll_Partial_Result_OK() {
+        final SimulationProgress progress = mock(SimulationProgress.class);
+        final List<List<RollDice>> partialResults = new ArrayList<>();
+        // partial result is materialized only during the call, the histogram keeps changing afterwards
+        doAnswer(invocation -> partialResults.add(invocation.<Supplier<List<RollDice>>>getArgument(1).get()))
+                .when(progress).onProgress(anyInt(), any());
+
+        service.rollMultipleDice(2, 6, 15, null, progress);
+
+        verify(progress).onProgress(eq(10), any());
+        assertThat(partialResults).containsExactly(List.of(new RollDice(2, 10L)));
+    }
+
+    @Test
+    void Roll_Seeded_Steps_Reproducible_OK() {
+        final SimulationProgress progress = mock(SimulationProgress.class);
+        final ArgumentCaptor<Long> seeds = ArgumentCaptor.forClass(Long.class);
+
+        service.rollMultipleDice(2, 6, 30, 42L, progress);
+        service.rollMultipleDice(2, 6, 30, 42L, progress);
+
+        verify(rollMultipleDiceService, times(6)).simulate(eq(2), eq(6), eq(10), seeds.capture());
+        assertThat(seeds.getAllValues().subList(0, 3)).doesNotContainNull()
+                                                       .doesNotHaveDuplicates()
+                                                       .isEqualTo(seeds.getAllValues().subList(3, 6));
+    }
+
+    @Test
+    void Roll_Cancelled_Not_Saved_FAIL() {
+        final SimulationProgress progress = mock(SimulationProgress.class);
+        when(progress.isCancelled()).thenReturn(false, true);
+
+        assertThatThrownBy(() -> service.rollMultipleDice(2, 6, 35, null, progress)).isInstanceOf(SimulationCancelledException.class);
+        verify(rollMultipleDiceService, times(1)).simulate(anyInt(), anyInt(), anyInt(), any());
+        verify(rollMultipleDiceService, never()).saveRollDiceData(anyInt(), anyInt(), anyList());
+    }
+
+    @Test
+    void Dequeue_Waiting_OK() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        when(rollMultipleDiceService.simulate(eq(3), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return new RollHistogram(3, 6);
+        });
+        final SimulationProgress running = mock(SimulationProgress.class);
+        final SimulationProgress waiting = mock(SimulationProgress.class);
+        service.start(3, 6, 10, null, running);
+        service.start(2, 6, 10, null, waiting);
+
+        assertThat(service.dequeue(waiting)).isTrue();
+        assertThat(service.dequeue(running)).isFalse();
+        release.countDown();
+
+        verify(running, timeout(10_000L)).onResult(anyList());
+        service.shutdown();
+        assertThat(service.executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        verify(waiting, never()).onStart();
+    }
+
+    @Test
+    void Start_Rejected_FAIL() {
+        service.shutdown();
+
+        assertThatThrownBy(() -> service.start(2, 6, 10, null, mock(SimulationProgress.class)))
+                .isInstanceOf(SimulationRejectedException.class);
+    }
+}
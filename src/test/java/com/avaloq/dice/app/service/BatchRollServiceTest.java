@@ -0,0 +1,115 @@
+package com.avaloq.dice.app.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.model.BatchRollResult;
+import com.avaloq.dice.app.model.RollConfiguration;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.service.random.ThreadLocalDiceRandomProvider;
+import com.avaloq.dice.app.service.simulation.ParallelRollSimulator;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchRollServiceTest {
+
+    RollMultipleDiceService rollMultipleDiceService;
+    SimulationAdmission simulationAdmission;
+    BatchRollService service;
+
+    @BeforeEach
+    void setUp() {
+        rollMultipleDiceService = mock(RollMultipleDiceService.class);
+        doCallRealMethod().when(rollMultipleDiceService).validateRollDice(anyInt(), anyInt(), anyInt());
+        when(rollMultipleDiceService.roll(anyInt(), anyInt(), anyInt(), any()))
+                .thenAnswer(invocation -> List.of(new RollDice(invocation.getArgument(0), (long) invocation.<Integer>getArgument(2))));
+
+        final SimulationProperties properties = new SimulationProperties();
+        properties.setBatchMaxSize(5);
+        simulationAdmission = mock(SimulationAdmission.class);
+        when(simulationAdmission.admit(anyLong(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        final PersistenceProperties persistenceProperties = new PersistenceProperties();
+        persistenceProperties.setWriteBehindBatchSize(2);
+        service = new BatchRollService(rollMultipleDiceService,
+                                       new ParallelRollSimulator(properties, new ThreadLocalDiceRandomProvider()),
+                                       simulationAdmission, properties, persistenceProperties);
+    }
+
+    @Test
+    void Batch_Results_In_Request_Order_OK() {
+        final List<RollConfiguration> configurations = List.of(new RollConfiguration(3, 6, 30, 42L),
+                                                               new RollConfiguration(null, 6, 10, null),
+                                                               new RollConfiguration(2, 3, 10, null),
+                                                               new RollConfiguration(1, 4, 5, null));
+
+        final List<BatchRollResult> results = service.rollBatch(configurations);
+
+        assertThat(results).extracting(BatchRollResult::getConfiguration).containsExactlyElementsOf(configurations);
+        assertThat(results).extracting(BatchRollResult::getResults)
+                           .containsExactly(List.of(new RollDice(3, 30L)), null, null, List.of(new RollDice(1, 5L)));
+        assertThat(results).extracting(BatchRollResult::getError)
+                           .containsExactly(null, BatchRollService.MISSING_INPUT, BatchRollService.IMPROPER_INPUT, null);
+        verify(rollMultipleDiceService).roll(3, 6, 30, 42L);
+        verify(rollMultipleDiceService, never()).roll(2, 3, 10, null);
+        verify(simulationAdmission).cost(3, 6, 30, true);
+        verify(simulationAdmission).cost(1, 4, 5, false);
+        verify(rollMultipleDiceService).saveAllRollDiceData(List.of(new SimulationResult(3, 6, List.of(new RollDice(3, 30L))),
+                                                                    new SimulationResult(1, 4, List.of(new RollDice(1, 5L)))));
+    }
+
+    @Test
+    void Batch_Nothing_Valid_OK() {
+        final List<BatchRollResult> results = service.rollBatch(List.of(new RollConfiguration(0, 6, 10, null)));
+
+        assertThat(results).extracting(BatchRollResult::getError).containsExactly(BatchRollService.IMPROPER_INPUT);
+        verify(rollMultipleDiceService, never()).saveAllRollDiceData(any());
+    }
+
+    @Test
+    void Batch_Simulation_Failed_OK() {
+        when(rollMultipleDiceService.roll(2, 6, 10, null)).thenThrow(new IllegalStateException("failed"));
+
+        final List<BatchRollResult> results = service.rollBatch(List.of(new RollConfiguration(2, 6, 10, null),
+                                                                        new RollConfiguration(1, 4, 5, null)));
+
+        assertThat(results).extracting(BatchRollResult::getResults).containsExactly(null, List.of(new RollDice(1, 5L)));
+        assertThat(results).extracting(BatchRollResult::getError).containsExactly(BatchRollService.SIMULATION_FAILED, null);
+        verify(rollMultipleDiceService).saveAllRollDiceData(List.of(new SimulationResult(1, 4, List.of(new RollDice(1, 5L)))));
+    }
+
+    @Test
+    void Batch_Stored_In_Chunks_OK() {
+        final List<BatchRollResult> results = service.rollBatch(List.of(new RollConfiguration(1, 4, 1, null),
+                                                                        new RollConfiguration(2, 4, 2, null),
+                                                                        new RollConfiguration(3, 4, 3, null)));
+
+        assertThat(results).extracting(BatchRollResult::getError).containsOnlyNulls();
+        verify(rollMultipleDiceService).saveAllRollDiceData(List.of(new SimulationResult(1, 4, List.of(new RollDice(1, 1L))),
+                                                                    new SimulationResult(2, 4, List.of(new RollDice(2, 2L)))));
+        verify(rollMultipleDiceService).saveAllRollDiceData(List.of(new SimulationResult(3, 4, List.of(new RollDice(3, 3L)))));
+    }
+
+    @Test
+    void Batch_Too_Large_FAIL() {
+        assertThatThrownBy(() -> service.rollBatch(Collections.nCopies(6, new RollConfiguration(1, 4, 1, null))))
+                .isInstanceOf(DiceRollInputDataValidationException.class);
+        verify(rollMultipleDiceService, never()).saveAllRollDiceData(any());
+    }
+}
@@ -0,0 +1,87 @@
+package com.avaloq.dice.app.service;
+
+import java.util.stream.IntStream;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.model.ExactDistribution;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class ExactDistributionServiceTest {
+
+    private ExactDistributionService exactDistributionService = new ExactDistributionService(new SimulationProperties());
+
+    @Test
+    public void Exact_Distribution_3_Dice_OK() {
+        final ExactDistribution distribution = exactDistributionService.exactDistribution(3, 6);
+        final long[] expected = {1, 3, 6, 10, 15, 21, 25, 27, 27, 25, 21, 15, 10, 6, 3, 1};
+
+        assertThat(distribution.getMinSum()).isEqualTo(3);
+        assertThat(distribution.getMaxSum()).isEqualTo(18);
+        for (int sum = 3; sum <= 18; sum++) {
+            assertThat(distribution.probability(sum) * 216).isCloseTo(expected[sum - 3], within(1e-9));
+        }
+        assertThat(distribution.probability(2)).isZero();
+        assertThat(distribution.probability(19)).isZero();
+    }
+
+    @Test
+    public void Exact_Distribution_Many_Dice_OK() {
+        final ExactDistribution distribution = exactDistributionService.exactDistribution(10_000, 6);
+        final double total = IntStream.rangeClosed(distribution.getMinSum(), distribution.getMaxSum())
+                                      .mapToDouble(distribution::probability)
+                                      .sum();
+
+        assertThat(distribution.getMaxSum()).isEqualTo(60_000);
+        assertThat(total).isCloseTo(1.0, within(1e-9));
+        assertThat(distribution.probability(35_000)).isCloseTo(1 / Math.sqrt(2 * Math.PI * 10_000 * 35.0 / 12), within(1e-5));
+    }
+
+    @Test
+    public void Exact_Distribution_Tail_Probability_OK() {
+        final ExactDistribution distribution = exactDistributionService.exactDistribution(1_000, 6);
+
+        assertThat(distribution.tailProbability(distribution.getMinSum())).isCloseTo(1.0, within(1e-9));
+        assertThat(distribution.tailProbability(distribution.getMaxSum())).isEqualTo(distribution.probability(distribution.getMaxSum()));
+        assertThat(distribution.tailProbability(distribution.getMaxSum() + 1)).isZero();
+        assertThat(IntStream.rangeClosed(distribution.getMinSum(), distribution.getMaxSum()))
+                .allMatch(sum -> distribution.tailProbability(sum) >= distribution.probability(sum));
+    }
+
+    @Test
+    public void Exact_Distribution_Cached_OK() {
+        assertThat(exactDistributionService.exactDistribution(5, 8)).isSameAs(exactDistributionService.exactDistribution(5, 8));
+    }
+
+    @Test
+    public void Exact_Distribution_Cache_Bounded_By_Columns_OK() {
+        final SimulationProperties properties = new SimulationProperties();
+        properties.setExactDistributionCacheMaxColumns(100L);
+        properties.setExactDistributionCacheMaxEntryColumns(60);
+        final ExactDistributionService boundedService = new ExactDistributionService(properties);
+
+        final ExactDistribution first = boundedService.exactDistribution(10, 6);
+        final ExactDistribution tooLarge = boundedService.exactDistribution(20, 6);
+        assertThat(boundedService.exactDistribution(10, 6)).isSameAs(first);
+        assertThat(boundedService.exactDistribution(20, 6)).isNotSameAs(tooLarge);
+
+        boundedService.exactDistribution(11, 6);
+        assertThat(boundedService.exactDistribution(10, 6)).isNotSameAs(first);
+    }
+
+    @Test
+    public void Exact_Distribution_Invalid_Sides_FAIL() {
+        assertThatThrownBy(() -> exactDistributionService.exactDistribution(3, 3))
+                .isInstanceOf(DiceRollInputDataValidationException.class);
+    }
+
+    @Test
+    public void Exact_Distribution_Invalid_Dice_FAIL() {
+        assertThatThrownBy(() -> exactDistributionService.exactDistribution(0, 6))
+                .isInstanceOf(DiceRollInputDataValidationException.class);
+    }
+}
@@ -0,0 +1,196 @@
+package com.avaloq.dice.app.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.RollDiceItemJdbcRepository;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
+import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.service.persistence.SimulationCompaction;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Simulations saved with JDBC batch and through the persistence context must be stored the same way
+ */
+@DataJpaTest
+public class RollDicePersistenceTest {
+
+    @Autowired
+    RollDiceRepository rollDiceRepository;
+
+    @Autowired
+    RollDiceItemRepository rollDiceItemRepository;
+
+    @Autowired
+    RollDiceAggregateRepository rollDiceAggregateRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    private RollDiceStorageService storage(PersistenceMode mode) {
+        final PersistenceProperties properties = new PersistenceProperties();
+        properties.setMode(mode);
+        return new RollDiceStorageService(rollDiceRepository, rollDiceAggregateRepository, rollDiceItemRepository,
+                                          new RollDiceItemJdbcRepository(jdbcTemplate, entityManagerFactory),
+                                          new TotalRollsCounter(rollDiceRepository, rollDiceItemRepository),
+                                          new LiveStatisticsStore(rollDiceAggregateRepository, new StatisticsProperties()),
+                                          new StatisticsProperties(), properties);
+    }
+
+    /**
+     * Total rolls counted from stored simulations, as at startup
+     */
+    private long loadedTotalRolls() {
+        final TotalRollsCounter totalRollsCounter = new TotalRollsCounter(rollDiceRepository, rollDiceItemRepository);
+        totalRollsCounter.load();
+        return totalRollsCounter.get();
+    }
+
+    private static List<RollDice> results(int dice, int sides, Random random) {
+        return IntStream.rangeClosed(dice, dice * sides)
+                        .mapToObj(sum -> new RollDice(sum, 1L + random.nextInt(100)))
+                        .collect(Collectors.toList());
+    }
+
+    @Test
+    void Save_Jdbc_And_Jpa_Interleaved_OK() {
+        final RollDiceStorageService jpaStorage = storage(PersistenceMode.JPA);
+        final RollDiceStorageService jdbcStorage = storage(PersistenceMode.JDBC);
+        final Random random = new Random(7L);
+
+        // 40 simulations of 3d20 need more than one block of item ids for both writers
+        final Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            final List<RollDice> results = results(3, 20, random);
+            results.forEach(r -> expected.merge(r.getResult(), r.getAmount(), Long::sum));
+            (i % 2 == 0 ? jpaStorage : jdbcStorage).save(3, 20, results);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        final List<RollDiceResultItemEntity> items = rollDiceItemRepository.findAll();
+        assertThat(items).hasSize(40 * 58);
+        assertThat(items.stream().map(RollDiceResultItemEntity::getId).distinct().count()).isEqualTo(items.size());
+        assertThat(rollDiceRepository.findAll()).hasSize(40)
+                                                .allSatisfy(s -> assertThat(s.getResultItems()).hasSize(58));
+        assertThat(items.stream().collect(Collectors.groupingBy(RollDiceResultItemEntity::getResult,
+                                                                 Collectors.summingLong(RollDiceResultItemEntity::getAmount))))
+                .isEqualTo(expected);
+        assertThat(rollDiceAggregateRepository.findAllWithResultAmounts()).hasSize(1)
+                .allSatisfy(a -> assertThat(a.getResultAmounts()).isEqualTo(expected));
+        assertThat(loadedTotalRolls()).isEqualTo(expected.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void Save_Jdbc_Empty_Result_OK() {
+        storage(PersistenceMode.JDBC).save(2, 6, List.of());
+        entityManager.clear();
+
+        final List<RollDiceResultEntity> simulations = rollDiceRepository.findAll();
+        assertThat(simulations).hasSize(1);
+        assertThat(simulations.get(0).getResultItems()).isEmpty();
+    }
+
+    @Test
+    void Save_Compact_OK() {
+        final List<RollDice> results = results(100, 6, new Random(3L));
+        storage(PersistenceMode.COMPACT).save(100, 6, results);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(rollDiceItemRepository.count()).isZero();
+        final List<RollDiceResultEntity> simulations = rollDiceRepository.findAll();
+        assertThat(simulations).hasSize(1);
+        assertThat(simulations.get(0).getHistogram())
+                .isEqualTo(results.stream().collect(Collectors.toMap(RollDice::getResult, RollDice::getAmount)));
+        assertThat(simulations.get(0).getRolls()).isEqualTo(results.stream().mapToLong(RollDice::getAmount).sum());
+        assertThat(loadedTotalRolls()).isEqualTo(simulations.get(0).getRolls());
+    }
+
+    @Test
+    void Compact_Items_Migration_OK() {
+        final RollDiceStorageService jdbcStorage = storage(PersistenceMode.JDBC);
+        final Random random = new Random(11L);
+        final Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            final List<RollDice> results = results(2, 6, random);
+            results.forEach(r -> expected.merge(r.getResult(), r.getAmount(), Long::sum));
+            jdbcStorage.save(2, 6, results);
+        }
+        entityManager.clear();
+
+        assertThat(jdbcStorage.compactItems(2)).isEqualTo(2);
+        assertThat(jdbcStorage.compactItems(2)).isEqualTo(2);
+        assertThat(jdbcStorage.compactItems(2)).isEqualTo(1);
+        assertThat(jdbcStorage.compactItems(2)).isZero();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(rollDiceItemRepository.count()).isZero();
+        final Map<Integer, Long> migrated = new HashMap<>();
+        rollDiceRepository.findHistograms(2, 6).forEach(h -> h.forEach((result, amount) -> migrated.merge(result, amount, Long::sum)));
+        assertThat(migrated).isEqualTo(expected);
+        assertThat(rollDiceRepository.sumCompactRolls()).isEqualTo(expected.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void Compaction_Merges_Pairs_OK() {
+        final RollDiceStorageService jdbcStorage = storage(PersistenceMode.JDBC);
+        final RollDiceStorageService compactStorage = storage(PersistenceMode.COMPACT);
+        final Random random = new Random(13L);
+        final Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 7; i++) {
+            final List<RollDice> results = results(2, 6, random);
+            results.forEach(r -> expected.merge(r.getResult(), r.getAmount(), Long::sum));
+            (i % 2 == 0 ? jdbcStorage : compactStorage).save(2, 6, results);
+        }
+        jdbcStorage.save(3, 4, results(3, 4, random));
+        entityManager.clear();
+        final List<RollDiceAggregateEntity> aggregates = jdbcStorage.aggregate(rollDiceRepository.findAll());
+        entityManager.clear();
+
+        final PersistenceProperties properties = new PersistenceProperties();
+        properties.setCompactionBatchSize(3);
+        assertThat(new SimulationCompaction(jdbcStorage, rollDiceRepository, properties).compact()).isEqualTo(6L);
+        entityManager.flush();
+        entityManager.clear();
+
+        final List<RollDiceResultEntity> simulations = rollDiceRepository.findAll();
+        assertThat(simulations).hasSize(2);
+        final RollDiceResultEntity compacted = simulations.stream().filter(s -> s.getDiceNo() == 2).findFirst().orElseThrow();
+        assertThat(compacted.getSimulations()).isEqualTo(7L);
+        assertThat(compacted.getHistogram()).isEqualTo(expected);
+        assertThat(compacted.getResultItems()).isEmpty();
+        assertThat(rollDiceItemRepository.count()).isEqualTo(10L);
+
+        assertThat(jdbcStorage.aggregate(simulations)).containsExactlyInAnyOrderElementsOf(aggregates);
+        assertThat(jdbcStorage.aggregateInDatabase()).containsExactlyInAnyOrderElementsOf(aggregates);
+    }
+}
@@ -0,0 +1,222 @@
+package com.avaloq.dice.app.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.RollDiceItemJdbcRepository;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.PairResultAmountProjection;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
+import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.repository.model.SimulationRowProjection;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RollDiceStorageServiceTest {
+
+    RollDiceRepository rollDiceRepository;
+    RollDiceAggregateRepository rollDiceAggregateRepository;
+    RollDiceItemRepository rollDiceItemRepository;
+    RollDiceItemJdbcRepository rollDiceItemJdbcRepository;
+    TotalRollsCounter totalRollsCounter;
+    LiveStatisticsStore liveStatisticsStore;
+    RollDiceStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        rollDiceRepository = mock(RollDiceRepository.class);
+        rollDiceAggregateRepository = mock(RollDiceAggregateRepository.class);
+        rollDiceItemRepository = mock(RollDiceItemRepository.class);
+        rollDiceItemJdbcRepository = mock(RollDiceItemJdbcRepository.class);
+        totalRollsCounter = mock(TotalRollsCounter.class);
+        liveStatisticsStore = mock(LiveStatisticsStore.class);
+        storageService = storageService(PersistenceMode.JPA);
+    }
+
+    private RollDiceStorageService storageService(PersistenceMode mode) {
+        final PersistenceProperties persistenceProperties = new PersistenceProperties();
+        persistenceProperties.setMode(mode);
+        return new RollDiceStorageService(rollDiceRepository, rollDiceAggregateRepository, rollDiceItemRepository,
+                                          rollDiceItemJdbcRepository, totalRollsCounter, liveStatisticsStore,
+                                          new StatisticsProperties(), persistenceProperties);
+    }
+
+    @Test
+    void Save_New_Aggregate_OK() {
+        when(rollDiceAggregateRepository.findForUpdate(anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        final List<RollDice> results = Lists.list(new RollDice(2, 3L), new RollDice(5, 7L));
+        storageService.save(2, 4, results);
+
+        final ArgumentCaptor<RollDiceResultEntity> simulation = ArgumentCaptor.forClass(RollDiceResultEntity.class);
+        verify(rollDiceRepository).save(simulation.capture());
+        assertThat(simulation.getValue().getResultItems()).hasSize(2);
+
+        final ArgumentCaptor<RollDiceAggregateEntity> aggregate = ArgumentCaptor.forClass(RollDiceAggregateEntity.class);
+        verify(rollDiceAggregateRepository).save(aggregate.capture());
+        assertThat(aggregate.getValue().getDiceNo()).isEqualTo(2);
+        assertThat(aggregate.getValue().getSidesNo()).isEqualTo(4);
+        assertThat(aggregate.getValue().getTotalSimulations()).isEqualTo(1L);
+        assertThat(aggregate.getValue().getTotalRolls()).isEqualTo(10L);
+        assertThat(aggregate.getValue().getResultAmounts()).containsEntry(2, 3L).containsEntry(5, 7L).hasSize(2);
+        verify(liveStatisticsStore).add(2, 4, results);
+    }
+
+    @Test
+    void Save_Jdbc_Items_OK() {
+        final List<RollDice> results = Lists.list(new RollDice(2, 3L), new RollDice(5, 7L));
+        when(rollDiceRepository.save(any(RollDiceResultEntity.class))).thenAnswer(invocation -> {
+            final RollDiceResultEntity simulation = invocation.getArgument(0);
+            simulation.setId(11L);
+            return simulation;
+        });
+        when(rollDiceAggregateRepository.findForUpdate(anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        storageService(PersistenceMode.JDBC).save(2, 4, results);
+
+        final ArgumentCaptor<RollDiceResultEntity> simulation = ArgumentCaptor.forClass(RollDiceResultEntity.class);
+        verify(rollDiceRepository).save(simulation.capture());
+        verify(rollDiceRepository).flush();
+        assertThat(simulation.getValue().getResultItems()).isEmpty();
+        verify(rollDiceItemJdbcRepository).insert(List.of(11L), List.of(results));
+
+        final ArgumentCaptor<RollDiceAggregateEntity> aggregate = ArgumentCaptor.forClass(RollDiceAggregateEntity.class);
+        verify(rollDiceAggregateRepository).save(aggregate.capture());
+        assertThat(aggregate.getValue().getTotalRolls()).isEqualTo(10L);
+        assertThat(aggregate.getValue().getResultAmounts()).containsEntry(2, 3L).containsEntry(5, 7L).hasSize(2);
+    }
+
+    @Test
+    void Save_All_Aggregate_Locked_Once_Per_Pair_OK() {
+        when(rollDiceAggregateRepository.findForUpdate(anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        storageService.saveAll(Lists.list(new SimulationResult(3, 6, Lists.list(new RollDice(3, 1L))),
+                                          new SimulationResult(2, 4, Lists.list(new RollDice(2, 2L))),
+                                          new SimulationResult(3, 6, Lists.list(new RollDice(3, 4L), new RollDice(4, 1L)))));
+
+        verify(rollDiceRepository, times(3)).save(any(RollDiceResultEntity.class));
+        final InOrder lockOrder = inOrder(rollDiceAggregateRepository);
+        lockOrder.verify(rollDiceAggregateRepository).findForUpdate(2, 4);
+        lockOrder.verify(rollDiceAggregateRepository).findForUpdate(3, 6);
+
+        final ArgumentCaptor<RollDiceAggregateEntity> aggregates = ArgumentCaptor.forClass(RollDiceAggregateEntity.class);
+        verify(rollDiceAggregateRepository, times(2)).save(aggregates.capture());
+        assertThat(aggregates.getAllValues().get(1).getTotalSimulations()).isEqualTo(2L);
+        assertThat(aggregates.getAllValues().get(1).getTotalRolls()).isEqualTo(6L);
+        assertThat(aggregates.getAllValues().get(1).getResultAmounts()).containsEntry(3, 5L).containsEntry(4, 1L).hasSize(2);
+    }
+
+    @Test
+    void Save_All_Total_Rolls_Added_Once_OK() {
+        when(rollDiceAggregateRepository.findForUpdate(anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        storageService.saveAll(Lists.list(new SimulationResult(3, 6, Lists.list(new RollDice(3, 1L))),
+                                          new SimulationResult(2, 4, Lists.list(new RollDice(2, 2L))),
+                                          new SimulationResult(3, 6, Lists.list(new RollDice(3, 4L), new RollDice(4, 1L)))));
+
+        verify(rollDiceAggregateRepository, times(2)).save(any(RollDiceAggregateEntity.class));
+        verify(totalRollsCounter).add(8L);
+    }
+
+    @Test
+    void Save_Existing_Aggregate_OK() {
+        final Map<Integer, Long> amounts = new HashMap<>(Map.of(2, 1L, 3, 4L));
+        final RollDiceAggregateEntity existing = new RollDiceAggregateEntity(2, 4, 3L, 5L, amounts);
+        when(rollDiceAggregateRepository.findForUpdate(2, 4)).thenReturn(Optional.of(existing));
+
+        storageService.save(2, 4, Lists.list(new RollDice(2, 3L), new RollDice(5, 7L)));
+
+        verify(rollDiceAggregateRepository).save(existing);
+        assertThat(existing.getTotalSimulations()).isEqualTo(4L);
+        assertThat(existing.getTotalRolls()).isEqualTo(15L);
+        assertThat(existing.getResultAmounts()).containsEntry(2, 4L).containsEntry(3, 4L).containsEntry(5, 7L).hasSize(3);
+    }
+
+    @Test
+    void Aggregate_Multi_Pairs_OK() {
+        final List<RollDiceAggregateEntity> aggregates = storageService.aggregate(Lists.list(
+                new RollDiceResultEntity(1L, 2, 4, Set.of(new RollDiceResultItemEntity(1L, null, 2, 2L))),
+                new RollDiceResultEntity(2L, 2, 4, Set.of(new RollDiceResultItemEntity(2L, null, 2, 3L),
+                                                          new RollDiceResultItemEntity(3L, null, 3, 1L))),
+                new RollDiceResultEntity(3L, 1, 4, Collections.emptySet())));
+
+        assertThat(aggregates).hasSize(2);
+        assertThat(aggregates.get(0).getTotalSimulations()).isEqualTo(2L);
+        assertThat(aggregates.get(0).getTotalRolls()).isEqualTo(6L);
+        assertThat(aggregates.get(0).getResultAmounts()).containsEntry(2, 5L).containsEntry(3, 1L);
+        assertThat(aggregates.get(1).getDiceNo()).isEqualTo(1);
+        assertThat(aggregates.get(1).getTotalSimulations()).isEqualTo(1L);
+        assertThat(aggregates.get(1).getTotalRolls()).isEqualTo(0L);
+    }
+
+    @Test
+    void Rebuild_Aggregates_Already_Built_OK() {
+        when(rollDiceAggregateRepository.count()).thenReturn(1L);
+
+        storageService.rebuildAggregates();
+
+        verify(rollDiceRepository, never()).findAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void Rebuild_Aggregates_OK() {
+        final SimulationRowProjection items = simulationRow(2, 4, 1L, null);
+        final SimulationRowProjection compact = simulationRow(2, 4, 3L, Map.of(3, 5L));
+        final PairResultAmountProjection item = mock(PairResultAmountProjection.class);
+        when(item.getDiceNo()).thenReturn(2);
+        when(item.getSidesNo()).thenReturn(4);
+        when(item.getResult()).thenReturn(2);
+        when(item.getAmount()).thenReturn(2L);
+        when(rollDiceAggregateRepository.count()).thenReturn(0L);
+        when(rollDiceRepository.count()).thenReturn(2L);
+        when(rollDiceRepository.streamAll()).thenReturn(Stream.of(items, compact));
+        when(rollDiceItemRepository.streamAll()).thenReturn(Stream.of(item));
+
+        storageService.rebuildAggregates();
+
+        verify(rollDiceRepository, never()).findAll();
+        final ArgumentCaptor<List<RollDiceAggregateEntity>> aggregates = ArgumentCaptor.forClass(List.class);
+        verify(rollDiceAggregateRepository).saveAll(aggregates.capture());
+        assertThat(aggregates.getValue()).hasSize(1);
+        assertThat(aggregates.getValue().get(0).getTotalSimulations()).isEqualTo(4L);
+        assertThat(aggregates.getValue().get(0).getTotalRolls()).isEqualTo(7L);
+        assertThat(aggregates.getValue().get(0).getResultAmounts()).containsEntry(2, 2L).containsEntry(3, 5L).hasSize(2);
+    }
+
+    private static SimulationRowProjection simulationRow(int diceNo, int sidesNo, long simulations, Map<Integer, Long> histogram) {
+        final SimulationRowProjection row = mock(SimulationRowProjection.class);
+        when(row.getDiceNo()).thenReturn(diceNo);
+        when(row.getSidesNo()).thenReturn(sidesNo);
+        when(row.getSimulations()).thenReturn(simulations);
+        when(row.getHistogram()).thenReturn(histogram);
+        return row;
+    }
+}
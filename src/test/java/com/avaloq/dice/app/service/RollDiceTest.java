@@ -3,6 +3,9 @@ package com.avaloq.dice.app.service;
 import java.util.Random;
 
 import com.avaloq.dice.app.exception.DiceSidesAmountException;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.random.ThreadLocalDiceRandomProvider;
+import com.avaloq.dice.app.service.simulation.PackedDiceSampler;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -11,7 +14,7 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 public class RollDiceTest {
 
 
-    private RollDiceService rollDiceService = new RollDiceService();
+    private RollDiceService rollDiceService = new RollDiceService(new ThreadLocalDiceRandomProvider());
 
     @Test
     public void Roll_Dice_OK() {
@@ -25,12 +28,42 @@ public class RollDiceTest {
                         .forEach(i -> assertThat(rollDiceService.rollDice(i)).isBetween(1, i));
     }
 
+    @Test
+    public void Roll_Dice_All_Sides_OK() {
+        final int[] rolls = new int[10_000];
+        rollDiceService.rollInto(4, rolls.length, rolls);
+
+        assertThat(rolls).containsOnly(1, 2, 3, 4);
+        assertThat(rolls).contains(1, 2, 3, 4);
+    }
+
+    @Test
+    public void Roll_Dice_Sum_OK() {
+        final DiceRandom random = new ThreadLocalDiceRandomProvider().create(42L);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(rollDiceService.sumOfDice(6, 3, random)).isBetween(3, 18);
+        }
+    }
+
+    @Test
+    public void Roll_Dice_Sum_Sides_Is_3() {
+        assertThatThrownBy(() -> rollDiceService.sumOfDice(3, 10)).isInstanceOf(DiceSidesAmountException.class);
+    }
+
     @Test
     public void Roll_Dice_Sides_Is_3() {
         assertThatThrownBy(() -> rollDiceService.rollDice(3)).isInstanceOf(DiceSidesAmountException.class);
 
     }
 
+    @Test
+    public void Packed_Sampler_Built_Once_OK() {
+        assertThat(rollDiceService.sumSampler(6, 10, true)).isInstanceOf(PackedDiceSampler.class)
+                                                          .isSameAs(rollDiceService.sumSampler(6, 10, true))
+                                                          .isNotSameAs(rollDiceService.sumSampler(6, 11, true));
+    }
+
     @Test
     public void Roll_Dice_Sides_Is_0() {
         assertThatThrownBy(() -> rollDiceService.rollDice(0)).isInstanceOf(DiceSidesAmountException.class);
@@ -0,0 +1,83 @@
+package com.avaloq.dice.app.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.service.persistence.SimulationWriteBehind;
+import com.avaloq.dice.app.service.random.ThreadLocalDiceRandomProvider;
+import com.avaloq.dice.app.service.simulation.AliasTableCache;
+import com.avaloq.dice.app.service.simulation.MultinomialRollSimulator;
+import com.avaloq.dice.app.service.simulation.ParallelRollSimulator;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import com.avaloq.dice.app.service.simulation.SimulationStrategySelector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Storing of simulations - kernels are not exercised here and are mocked
+ */
+public class RollMultipleDiceStoreTest {
+
+    RollDiceStorageService rollDiceStorageService;
+    SimulationWriteBehind simulationWriteBehind;
+    RollMultipleDiceService service;
+
+    @BeforeEach
+    void setUp() {
+        rollDiceStorageService = mock(RollDiceStorageService.class);
+        simulationWriteBehind = mock(SimulationWriteBehind.class);
+        final SimulationAdmission simulationAdmission = mock(SimulationAdmission.class);
+        when(simulationAdmission.admit(anyLong(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        service = new RollMultipleDiceService(new RollDiceService(new ThreadLocalDiceRandomProvider()), rollDiceStorageService,
+                                              mock(SimulationStrategySelector.class), mock(ParallelRollSimulator.class),
+                                              mock(MultinomialRollSimulator.class), mock(AliasTableCache.class),
+                                              simulationWriteBehind, simulationAdmission);
+    }
+
+    @Test
+    void Save_Write_Behind_OK() {
+        final List<RollDice> result = List.of(new RollDice(7, 10L));
+        when(simulationWriteBehind.submit(any())).thenReturn(true);
+
+        service.saveRollDiceData(2, 6, result);
+
+        verify(simulationWriteBehind).submit(new SimulationResult(2, 6, result));
+        verify(rollDiceStorageService, never()).save(anyInt(), anyInt(), anyList());
+    }
+
+    @Test
+    void Save_Retried_Once_OK() {
+        final List<RollDice> result = List.of(new RollDice(7, 10L));
+        doThrow(DataIntegrityViolationException.class).doNothing().when(rollDiceStorageService).save(2, 6, result);
+
+        service.saveRollDiceData(2, 6, result);
+
+        verify(rollDiceStorageService, times(2)).save(2, 6, result);
+    }
+
+    @Test
+    void Streamed_Stored_When_Not_Written_FAIL() {
+        assertThatThrownBy(() -> service.rollMultipleDice(20_000, 100, 10, 7L, (result, amount) -> {
+            throw new IOException("closed");
+        })).isInstanceOf(IOException.class);
+
+        verify(rollDiceStorageService).save(eq(20_000), eq(100), anyList());
+    }
+}
@@ -1,11 +1,25 @@
 package com.avaloq.dice.app.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Supplier;
 
+import com.avaloq.dice.app.config.SimulationProperties;
 import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
 import com.avaloq.dice.app.model.RollDice;
-import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.service.persistence.SimulationWriteBehind;
+import com.avaloq.dice.app.service.random.DiceRandomProvider;
+import com.avaloq.dice.app.service.random.ThreadLocalDiceRandomProvider;
+import com.avaloq.dice.app.service.simulation.AliasTableCache;
+import com.avaloq.dice.app.service.simulation.DiceSumSampler;
+import com.avaloq.dice.app.service.simulation.MultinomialRollSimulator;
+import com.avaloq.dice.app.service.simulation.ParallelRollSimulator;
+import com.avaloq.dice.app.service.simulation.SimulationAdmission;
+import com.avaloq.dice.app.service.simulation.SimulationCostModel;
+import com.avaloq.dice.app.service.simulation.SimulationStrategySelector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -13,19 +27,47 @@ import org.junit.jupiter.api.TestInstance;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class RollMultipleDiceTest {
 
-    RollDiceRepository rollDiceRepository;
     RollMultipleDiceService rollDiceService;
     Random random = new Random();
+    DiceRandomProvider randomProvider = new ThreadLocalDiceRandomProvider();
 
     @BeforeAll
     void setUp() {
-        rollDiceRepository = mock(RollDiceRepository.class);
-        rollDiceService = new RollMultipleDiceService(new RollDiceService(), rollDiceRepository);
+        rollDiceService = service(new RollDiceService(randomProvider));
+    }
+
+    private RollMultipleDiceService service(RollDiceService rollDiceService) {
+        return service(rollDiceService, new SimulationProperties());
+    }
+
+    /**
+     * Service with real simulation kernels and their selection - storage and admission are not exercised here and are mocked
+     */
+    private RollMultipleDiceService service(RollDiceService rollDiceService, SimulationProperties properties) {
+        final ExactDistributionService exactDistributionService = new ExactDistributionService(properties);
+        final ParallelRollSimulator parallelRollSimulator = new ParallelRollSimulator(properties, randomProvider);
+        final MultinomialRollSimulator multinomialRollSimulator = new MultinomialRollSimulator(exactDistributionService, properties);
+        final AliasTableCache aliasTableCache = new AliasTableCache(exactDistributionService, properties);
+        final SimulationStrategySelector strategySelector = new SimulationStrategySelector(
+                new SimulationCostModel(rollDiceService, multinomialRollSimulator, properties),
+                parallelRollSimulator, multinomialRollSimulator, aliasTableCache, new SimpleMeterRegistry(), properties);
+        return new RollMultipleDiceService(rollDiceService, mock(RollDiceStorageService.class), strategySelector,
+                                           parallelRollSimulator, multinomialRollSimulator, aliasTableCache,
+                                           mock(SimulationWriteBehind.class), admitAll());
+    }
+
+    private static SimulationAdmission admitAll() {
+        final SimulationAdmission simulationAdmission = mock(SimulationAdmission.class);
+        when(simulationAdmission.admit(anyLong(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        return simulationAdmission;
     }
 
     @Test
@@ -42,12 +84,15 @@ public class RollMultipleDiceTest {
 
     @Test
     public void Roll_Multiple_Dice_Sum_OK() {
-        RollMultipleDiceService rollDiceService = new RollMultipleDiceService(new RollDiceService() {
-            @Override public int rollDice(int sides) {
-                return sides;
-            }
-        }, rollDiceRepository);
-        assertThat(rollDiceService.singleRollDice(4, 6)).isEqualTo(4*6);
+        final int numberOfDice = 4;
+        final int numberOfSides = 6;
+        final int numberOfTimes = 1 + random.nextInt(1000);
+
+        final List<RollDice> rollResults = rollDiceService.rollMultipleDice(numberOfDice, numberOfSides, numberOfTimes);
+
+        assertThat(rollResults).extracting("result", Integer.class)
+                               .allMatch(sum -> sum >= numberOfDice && sum <= numberOfDice * numberOfSides);
+        assertThat(rollResults.stream().mapToLong(RollDice::getAmount).sum()).isEqualTo(numberOfTimes);
     }
 
     @Test
@@ -98,11 +143,11 @@ public class RollMultipleDiceTest {
 
         final int MAX_RESULT = numberOfDice * numberOfSides;
 
-        RollMultipleDiceService mockedRollDiceService = new RollMultipleDiceService(new RollDiceService() {
-            @Override public int rollDice(int sides) {
-                return sides;
+        RollMultipleDiceService mockedRollDiceService = service(new RollDiceService(randomProvider) {
+            @Override public DiceSumSampler sumSampler(int sides, int count, boolean packed) {
+                return random -> sides * count;
             }
-        }, rollDiceRepository);
+        });
 
         final List<RollDice> rollResults = mockedRollDiceService.rollMultipleDice(numberOfDice, numberOfSides, numberOfTimes);
 
@@ -119,21 +164,79 @@ public class RollMultipleDiceTest {
 
         final int MAX_RESULT = numberOfDice * numberOfSides;
 
-        RollMultipleDiceService mockedRollDiceService = new RollMultipleDiceService(new RollDiceService() {
+        RollMultipleDiceService mockedRollDiceService = service(new RollDiceService(randomProvider) {
             private int counter = 0;
-            @Override public int rollDice(int sides) {
-                return ++counter % 2;
+            @Override public DiceSumSampler sumSampler(int sides, int count, boolean packed) {
+                return random -> ++counter % 2 + 4;
             }
-        }, rollDiceRepository);
+        });
 
         final List<RollDice> rollResults = mockedRollDiceService.rollMultipleDice(numberOfDice, numberOfSides, numberOfTimes);
 
         assertThat(rollResults).isNotEmpty();
         assertThat(rollResults).hasSize(2);
-        assertThat(rollResults).extracting("result", Integer.class).contains(1, 2);
+        assertThat(rollResults).extracting("result", Integer.class).contains(4, 5);
         assertThat(rollResults).element(0).isNotNull();
         assertThat(rollResults.get(0).getAmount()).isCloseTo(numberOfTimes/2, within(1l));
         assertThat(rollResults).element(1).isNotNull();
         assertThat(rollResults.get(1).getAmount()).isCloseTo(numberOfTimes/2, within(1l));
     }
+
+    @Test
+    public void Roll_Multiple_Dice_Seed_Reproducible_OK() {
+        final List<RollDice> first = rollDiceService.rollMultipleDice(3, 6, 10_000, 42L);
+        final List<RollDice> second = rollDiceService.rollMultipleDice(3, 6, 10_000, 42L);
+
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    public void Roll_Multiple_Dice_Streamed_Seed_Reproducible_OK() throws IOException {
+        final List<RollDice> streamed = new ArrayList<>();
+        rollDiceService.rollMultipleDice(3, 6, 10_000, 42L, (result, amount) -> streamed.add(new RollDice(result, amount)));
+
+        assertThat(streamed).isEqualTo(rollDiceService.rollMultipleDice(3, 6, 10_000, 42L));
+    }
+
+    @Test
+    public void Roll_Multiple_Dice_Seed_Independent_Of_Parallelism_OK() {
+        SimulationProperties sequential = new SimulationProperties();
+        sequential.setChunkSize(1_000);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        sequential.setParallelism(1);
+
+        SimulationProperties parallel = new SimulationProperties();
+        parallel.setChunkSize(1_000);
+        parallel.setParallelThreshold(1);
+        parallel.setParallelism(4);
+
+        final List<RollDice> sequentialResult = service(new RollDiceService(randomProvider), sequential).rollMultipleDice(5, 8, 100_000, 7L);
+        final List<RollDice> parallelResult = service(new RollDiceService(randomProvider), parallel).rollMultipleDice(5, 8, 100_000, 7L);
+
+        assertThat(parallelResult).isEqualTo(sequentialResult);
+        assertThat(parallelResult.stream().mapToLong(RollDice::getAmount).sum()).isEqualTo(100_000L);
+    }
+
+    @Test
+    public void Roll_Multiple_Dice_Multinomial_OK() {
+        SimulationProperties multinomial = new SimulationProperties();
+        multinomial.setMultinomialThreshold(1L);
+
+        final List<RollDice> result = service(new RollDiceService(randomProvider), multinomial).rollMultipleDice(3, 6, 1_000_000, 7L);
+
+        assertThat(result).extracting("result", Integer.class).allMatch(sum -> sum >= 3 && sum <= 18);
+        assertThat(result.stream().mapToLong(RollDice::getAmount).sum()).isEqualTo(1_000_000L);
+        assertThat(result).isEqualTo(service(new RollDiceService(randomProvider), multinomial).rollMultipleDice(3, 6, 1_000_000, 7L));
+    }
+
+    @Test
+    public void Roll_Multiple_Dice_Alias_Table_OK() {
+        SimulationProperties alias = new SimulationProperties();
+        alias.setAliasDiceThreshold(2);
+
+        final List<RollDice> result = service(new RollDiceService(randomProvider), alias).rollMultipleDice(100, 6, 10_000, 7L);
+
+        assertThat(result).extracting("result", Integer.class).allMatch(sum -> sum >= 100 && sum <= 600);
+        assertThat(result.stream().mapToLong(RollDice::getAmount).sum()).isEqualTo(10_000L);
+    }
 }
@@ -0,0 +1,168 @@
+package com.avaloq.dice.app.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.DiceRollInputDataValidationException;
+import com.avaloq.dice.app.exception.SimulationCancelledException;
+import com.avaloq.dice.app.exception.SimulationJobNotFoundException;
+import com.avaloq.dice.app.exception.SimulationRejectedException;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.service.simulation.SimulationJob;
+import com.avaloq.dice.app.service.simulation.SimulationJobStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SimulationJobServiceTest {
+
+    BackgroundSimulationService backgroundSimulationService;
+    SimulationProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        backgroundSimulationService = mock(BackgroundSimulationService.class);
+        properties = new SimulationProperties();
+    }
+
+    @Test
+    void Job_Submitted_Queued_OK() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+
+        final SimulationJob job = service.submit(2, 6, 100, 42L);
+
+        verify(backgroundSimulationService).start(2, 6, 100, 42L, job);
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.QUEUED);
+        assertThat(service.find(job.getId())).isSameAs(job);
+    }
+
+    @Test
+    void Job_Progress_And_Result_OK() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob job = service.submit(2, 6, 100, null);
+
+        job.onStart();
+        job.onProgress(40, () -> { throw new AssertionError("partial result should not be materialized"); });
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.RUNNING);
+        assertThat(job.getRollsDone()).isEqualTo(40);
+        assertThat(job.getResult()).isNull();
+
+        job.onResult(List.of(new RollDice(7, 100L)));
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.COMPLETED);
+        assertThat(job.getRollsDone()).isEqualTo(100);
+        assertThat(job.getResult()).containsExactly(new RollDice(7, 100L));
+    }
+
+    @Test
+    void Job_Cancelled_While_Queued_OK() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob job = service.submit(2, 6, 100, null);
+
+        service.cancel(job.getId());
+
+        assertThat(job.isCancelled()).isTrue();
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.CANCELLED);
+        verify(backgroundSimulationService).dequeue(job);
+        job.onStart();
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.CANCELLED);
+    }
+
+    @Test
+    void Job_Cancelled_While_Running_OK() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob job = service.submit(2, 6, 100, null);
+        job.onStart();
+
+        service.cancel(job.getId());
+        assertThat(job.isCancelled()).isTrue();
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.RUNNING);
+
+        job.onFailure(new SimulationCancelledException());
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.CANCELLED);
+    }
+
+    @Test
+    void Job_Completed_Not_Cancelled_OK() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob job = service.submit(2, 6, 100, null);
+        job.onStart();
+        job.onResult(List.of(new RollDice(7, 100L)));
+
+        service.cancel(job.getId());
+
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.COMPLETED);
+    }
+
+    @Test
+    void Job_Failed_OK() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob job = service.submit(2, 6, 100, null);
+        job.onStart();
+
+        job.onFailure(new IllegalStateException());
+
+        assertThat(job.getStatus()).isEqualTo(SimulationJobStatus.FAILED);
+    }
+
+    @Test
+    void Job_Expired_FAIL() {
+        properties.setJobRetention(Duration.ZERO);
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob finished = service.submit(2, 6, 100, null);
+        finished.onResult(List.of(new RollDice(7, 100L)));
+        final SimulationJob running = service.submit(2, 6, 100, null);
+
+        assertThatThrownBy(() -> service.find(finished.getId())).isInstanceOf(SimulationJobNotFoundException.class);
+        assertThat(service.jobs).containsOnlyKeys(running.getId());
+    }
+
+    @Test
+    void Job_Expired_Swept_OK() {
+        properties.setJobRetention(Duration.ZERO);
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob finished = service.submit(2, 6, 100, null);
+        finished.onResult(List.of(new RollDice(7, 100L)));
+
+        service.removeExpired();
+
+        assertThat(service.jobs).isEmpty();
+    }
+
+    @Test
+    void Job_Max_Retained_FAIL() {
+        properties.setJobMaxRetained(1);
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+        final SimulationJob retained = service.submit(2, 6, 100, null);
+
+        assertThatThrownBy(() -> service.submit(2, 6, 100, null)).isInstanceOf(SimulationRejectedException.class);
+        assertThat(service.jobs).containsOnlyKeys(retained.getId());
+    }
+
+    @Test
+    void Job_Not_Found_FAIL() {
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+
+        assertThatThrownBy(() -> service.find(UUID.randomUUID())).isInstanceOf(SimulationJobNotFoundException.class);
+        assertThatThrownBy(() -> service.cancel(UUID.randomUUID())).isInstanceOf(SimulationJobNotFoundException.class);
+    }
+
+    @Test
+    void Job_Validation_FAIL() {
+        doThrow(DiceRollInputDataValidationException.class).when(backgroundSimulationService)
+                                                            .start(eq(0), anyInt(), anyInt(), any(), any());
+        final SimulationJobService service = new SimulationJobService(backgroundSimulationService, properties);
+
+        assertThatThrownBy(() -> service.submit(0, 6, 100, null)).isInstanceOf(DiceRollInputDataValidationException.class);
+        assertThat(service.jobs).isEmpty();
+    }
+}
@@ -0,0 +1,170 @@
+package com.avaloq.dice.app.service;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.TotalNumberSimulation;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.RollDiceItemJdbcRepository;
+import com.avaloq.dice.app.repository.RollDiceItemRepository;
+import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.StatisticsAggregation;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statistics aggregated with database queries must be exactly the same as aggregated in Java,
+ * for simulations stored both as result items and as compact histograms
+ */
+@DataJpaTest
+public class StatisticsAggregationTest {
+
+    private static final int[][] PAIRS = {{1, 4}, {2, 6}, {3, 6}, {10, 20}};
+
+    @Autowired
+    RollDiceRepository rollDiceRepository;
+
+    @Autowired
+    RollDiceItemRepository rollDiceItemRepository;
+
+    @Autowired
+    RollDiceAggregateRepository rollDiceAggregateRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    RollDiceStorageService javaStorage;
+    RollDiceStorageService databaseStorage;
+    StatisticsService javaStatistics;
+    StatisticsService databaseStatistics;
+
+    @BeforeEach
+    void setUp() {
+        javaStorage = storage(StatisticsAggregation.JAVA, PersistenceMode.JDBC);
+        databaseStorage = storage(StatisticsAggregation.DATABASE, PersistenceMode.JDBC);
+        final RollDiceStorageService compactStorage = storage(StatisticsAggregation.JAVA, PersistenceMode.COMPACT);
+
+        final Random random = new Random(42L);
+        for (int i = 0; i < 200; i++) {
+            final int[] pair = PAIRS[random.nextInt(PAIRS.length)];
+            (i % 3 == 0 ? compactStorage : javaStorage).save(pair[0], pair[1], IntStream.rangeClosed(pair[0], pair[0] * pair[1])
+                                                        .filter(sum -> random.nextBoolean())
+                                                        .mapToObj(sum -> new RollDice(sum, 1L + random.nextInt(1000)))
+                                                        .collect(Collectors.toList()));
+        }
+        javaStorage.save(5, 5, Collections.emptyList());
+        // aggregate of the last save is only queued - nothing is queried after it to flush it
+        entityManager.flush();
+        entityManager.clear();
+
+        final TotalRollsCounter totalRollsCounter = new TotalRollsCounter(rollDiceRepository, rollDiceItemRepository);
+        totalRollsCounter.load();
+        javaStatistics = statistics(StatisticsAggregation.JAVA, totalRollsCounter);
+        databaseStatistics = statistics(StatisticsAggregation.DATABASE, totalRollsCounter);
+    }
+
+    private RollDiceStorageService storage(StatisticsAggregation aggregation, PersistenceMode mode) {
+        final PersistenceProperties persistenceProperties = new PersistenceProperties();
+        persistenceProperties.setMode(mode);
+        return new RollDiceStorageService(rollDiceRepository, rollDiceAggregateRepository, rollDiceItemRepository,
+                                          new RollDiceItemJdbcRepository(jdbcTemplate, entityManagerFactory),
+                                          new TotalRollsCounter(rollDiceRepository, rollDiceItemRepository),
+                                          new LiveStatisticsStore(rollDiceAggregateRepository, properties(aggregation)),
+                                          properties(aggregation), persistenceProperties);
+    }
+
+    private static StatisticsProperties properties(StatisticsAggregation aggregation) {
+        final StatisticsProperties properties = new StatisticsProperties();
+        properties.setLive(false);
+        properties.setAggregation(aggregation);
+        return properties;
+    }
+
+    private StatisticsService statistics(StatisticsAggregation aggregation, TotalRollsCounter totalRollsCounter) {
+        final StatisticsProperties properties = properties(aggregation);
+        return new StatisticsService(rollDiceAggregateRepository, rollDiceItemRepository, rollDiceRepository,
+                                     new LiveStatisticsStore(rollDiceAggregateRepository, properties),
+                                     totalRollsCounter, properties);
+    }
+
+    private static List<RollDiceAggregateEntity> sorted(List<RollDiceAggregateEntity> aggregates) {
+        return aggregates.stream()
+                         .sorted(Comparator.comparing(RollDiceAggregateEntity::getDiceNo).thenComparing(RollDiceAggregateEntity::getSidesNo))
+                         .collect(Collectors.toList());
+    }
+
+    @Test
+    void Aggregates_Database_Equal_Java_OK() {
+        final List<RollDiceAggregateEntity> java = sorted(javaStorage.aggregate(rollDiceRepository.findAll()));
+        final List<RollDiceAggregateEntity> database = sorted(databaseStorage.aggregateInDatabase());
+
+        assertThat(database).isEqualTo(java).hasSize(PAIRS.length + 1);
+        for (int i = 0; i < java.size(); i++) {
+            assertThat(database.get(i).getResultAmounts()).isEqualTo(java.get(i).getResultAmounts());
+        }
+    }
+
+    @Test
+    void Aggregates_Streamed_Equal_Java_OK() {
+        final List<RollDiceAggregateEntity> java = sorted(javaStorage.aggregate(rollDiceRepository.findAll()));
+        entityManager.flush();
+        entityManager.clear();
+        final List<RollDiceAggregateEntity> streamed = sorted(javaStorage.aggregateStreamed());
+
+        assertThat(streamed).isEqualTo(java);
+        for (int i = 0; i < java.size(); i++) {
+            assertThat(streamed.get(i).getResultAmounts()).isEqualTo(java.get(i).getResultAmounts());
+        }
+    }
+
+    @Test
+    void Maintained_Aggregates_Equal_Java_OK() {
+        final List<RollDiceAggregateEntity> java = sorted(javaStorage.aggregate(rollDiceRepository.findAll()));
+        final List<TotalNumberSimulation> totals = javaStatistics.statsticsTotalNumber();
+
+        assertThat(totals).extracting("diceNo", Integer.class)
+                          .containsExactlyElementsOf(java.stream().map(RollDiceAggregateEntity::getDiceNo).collect(Collectors.toList()));
+        assertThat(totals).extracting("sidesNo", Integer.class)
+                          .containsExactlyElementsOf(java.stream().map(RollDiceAggregateEntity::getSidesNo).collect(Collectors.toList()));
+        assertThat(totals).extracting("totalSimulations", Long.class)
+                          .containsExactlyElementsOf(java.stream().map(RollDiceAggregateEntity::getTotalSimulations).collect(Collectors.toList()));
+        assertThat(totals).extracting("totalRolls", Long.class)
+                          .containsExactlyElementsOf(java.stream().map(RollDiceAggregateEntity::getTotalRolls).collect(Collectors.toList()));
+    }
+
+    @Test
+    void Relative_Distribution_Database_Equal_Java_OK() {
+        for (int[] pair : PAIRS) {
+            assertThat(databaseStatistics.amountsAggregatedInDatabase(pair[0], pair[1]))
+                    .isEqualTo(javaStatistics.amountsAggregatedInJava(pair[0], pair[1]));
+            assertThat(databaseStatistics.relativeDistribution(pair[0], pair[1]))
+                    .isNotEmpty()
+                    .isEqualTo(javaStatistics.relativeDistribution(pair[0], pair[1]));
+        }
+        assertThat(databaseStatistics.relativeDistribution(7, 7)).isEqualTo(javaStatistics.relativeDistribution(7, 7)).isEmpty();
+    }
+}
@@ -1,24 +1,38 @@
 package com.avaloq.dice.app.service;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.config.StatisticsProperties;
 import com.avaloq.dice.app.exception.NoSimulationsException;
 import com.avaloq.dice.app.model.RollDistribution;
 import com.avaloq.dice.app.model.TotalNumberSimulation;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.RollDiceItemJdbcRepository;
 import com.avaloq.dice.app.repository.RollDiceItemRepository;
 import com.avaloq.dice.app.repository.RollDiceRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
 import com.avaloq.dice.app.repository.model.RollDiceResultEntity;
 import com.avaloq.dice.app.repository.model.RollDiceResultItemEntity;
+import com.avaloq.dice.app.service.statistics.LiveStatisticsStore;
+import com.avaloq.dice.app.service.statistics.TotalRollsCounter;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.domain.Sort;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -26,20 +40,49 @@ import static org.mockito.Mockito.when;
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class StatisticsServiceTest {
 
-    RollDiceRepository rollDiceRepository;
+    RollDiceAggregateRepository rollDiceAggregateRepository;
     RollDiceItemRepository rollDiceItemRepository;
+    RollDiceRepository rollDiceRepository;
+    TotalRollsCounter totalRollsCounter;
     StatisticsService statisticsService;
+    RollDiceStorageService rollDiceStorageService;
 
     @BeforeAll
     void setUp() {
-        rollDiceRepository = mock(RollDiceRepository.class);
+        rollDiceAggregateRepository = mock(RollDiceAggregateRepository.class);
         rollDiceItemRepository = mock(RollDiceItemRepository.class);
-        statisticsService = new StatisticsService(rollDiceRepository, rollDiceItemRepository);
+        rollDiceRepository = mock(RollDiceRepository.class);
+        totalRollsCounter = new TotalRollsCounter(rollDiceRepository, rollDiceItemRepository);
+        final LiveStatisticsStore liveStatisticsStore = new LiveStatisticsStore(rollDiceAggregateRepository, new StatisticsProperties());
+        rollDiceStorageService = new RollDiceStorageService(rollDiceRepository, rollDiceAggregateRepository, rollDiceItemRepository,
+                                                            mock(RollDiceItemJdbcRepository.class), totalRollsCounter, liveStatisticsStore,
+                                                            new StatisticsProperties(), new PersistenceProperties());
+        statisticsService = new StatisticsService(rollDiceAggregateRepository, rollDiceItemRepository, rollDiceRepository,
+                                                  liveStatisticsStore, totalRollsCounter, new StatisticsProperties());
+    }
+
+    /**
+     * Total rolls of stored simulations loaded into the counter
+     */
+    private void totalRolls(Long rolls) {
+        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(rolls);
+        when(rollDiceRepository.sumCompactRolls()).thenReturn(null);
+        totalRollsCounter.load();
+    }
+
+    /**
+     * Aggregates of given simulations in the order they are read from DB
+     */
+    private List<RollDiceAggregateEntity> aggregates(List<RollDiceResultEntity> simulations) {
+        return rollDiceStorageService.aggregate(simulations).stream()
+                                     .sorted(Comparator.comparing(RollDiceAggregateEntity::getDiceNo)
+                                                       .thenComparing(RollDiceAggregateEntity::getSidesNo))
+                                     .collect(Collectors.toList());
     }
 
     @Test
     void Total_Statistics_Empty_Data_OK() {
-        when(rollDiceRepository.findAll()).thenReturn(Collections.emptyList());
+        when(rollDiceAggregateRepository.findAll(any(Sort.class))).thenReturn(Collections.emptyList());
 
         final List<TotalNumberSimulation> result = statisticsService.statsticsTotalNumber();
 
@@ -49,8 +92,8 @@ public class StatisticsServiceTest {
 
     @Test
     void Total_Statistics_Single_Result_No_Items_Data_OK() {
-        when(rollDiceRepository.findAll()).thenReturn(Lists.list(
-                new RollDiceResultEntity(1L, 1, 5, Collections.emptySet())));
+        when(rollDiceAggregateRepository.findAll(any(Sort.class))).thenReturn(aggregates(Lists.list(
+                new RollDiceResultEntity(1L, 1, 5, Collections.emptySet()))));
 
         final List<TotalNumberSimulation> result = statisticsService.statsticsTotalNumber();
 
@@ -64,8 +107,8 @@ public class StatisticsServiceTest {
 
     @Test
     void Total_Statistics_Single_Complete_Data_OK() {
-        when(rollDiceRepository.findAll()).thenReturn(Lists.list(
-                new RollDiceResultEntity(1L, 2, 4, Set.of(new RollDiceResultItemEntity(1L, null, 1, 2L)))));
+        when(rollDiceAggregateRepository.findAll(any(Sort.class))).thenReturn(aggregates(Lists.list(
+                new RollDiceResultEntity(1L, 2, 4, Set.of(new RollDiceResultItemEntity(1L, null, 1, 2L))))));
 
         final List<TotalNumberSimulation> result = statisticsService.statsticsTotalNumber();
 
@@ -79,9 +122,9 @@ public class StatisticsServiceTest {
 
     @Test
     void Total_Statistics_Single_Duplicated_Complete_Data_OK() {
-        when(rollDiceRepository.findAll()).thenReturn(Lists.list(
+        when(rollDiceAggregateRepository.findAll(any(Sort.class))).thenReturn(aggregates(Lists.list(
                 new RollDiceResultEntity(1L, 2, 4, Set.of(new RollDiceResultItemEntity(1L, null, 1, 2L),
-                                                          new RollDiceResultItemEntity(2L, null, 2, 5L)))));
+                                                          new RollDiceResultItemEntity(2L, null, 2, 5L))))));
 
         final List<TotalNumberSimulation> result = statisticsService.statsticsTotalNumber();
 
@@ -95,9 +138,9 @@ public class StatisticsServiceTest {
 
     @Test
     void Total_Statistics_Multi_The_Same_Complete_Data_OK() {
-        when(rollDiceRepository.findAll()).thenReturn(Lists.list(
+        when(rollDiceAggregateRepository.findAll(any(Sort.class))).thenReturn(aggregates(Lists.list(
                 new RollDiceResultEntity(1L, 2, 4, Set.of(new RollDiceResultItemEntity(1L, null, 1, 2L),
-                                                          new RollDiceResultItemEntity(2L, null, 1, 3L)))));
+                                                          new RollDiceResultItemEntity(2L, null, 1, 3L))))));
 
         final List<TotalNumberSimulation> result = statisticsService.statsticsTotalNumber();
 
@@ -111,11 +154,11 @@ public class StatisticsServiceTest {
 
     @Test
     void Total_Statistics_Multi_Multi_Complete_Data_OK() {
-        when(rollDiceRepository.findAll()).thenReturn(Lists.list(
+        when(rollDiceAggregateRepository.findAll(any(Sort.class))).thenReturn(aggregates(Lists.list(
                 new RollDiceResultEntity(1L, 2, 4, Set.of(new RollDiceResultItemEntity(1L, null, 1, 2L))),
                 new RollDiceResultEntity(2L, 2, 4, Set.of(new RollDiceResultItemEntity(2L, null, 1, 3L))),
                 new RollDiceResultEntity(3L, 2, 5, Set.of(new RollDiceResultItemEntity(3L, null, 1, 20L))),
-                new RollDiceResultEntity(4L, 1, 4, Set.of(new RollDiceResultItemEntity(4L, null, 1, 30L)))));
+                new RollDiceResultEntity(4L, 1, 4, Set.of(new RollDiceResultItemEntity(4L, null, 1, 30L))))));
 
         final List<TotalNumberSimulation> result = statisticsService.statsticsTotalNumber();
 
@@ -141,7 +184,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Null_Data_Exception_FAIL() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(null);
+        totalRolls(null);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt())).thenReturn(Lists.emptyList());
 
         assertThatThrownBy(() -> statisticsService.relativeDistribution(1, 1)).isInstanceOf(NoSimulationsException.class);
@@ -149,7 +192,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Empty_Data_Exception_FAIL() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(0L);
+        totalRolls(0L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt())).thenReturn(Lists.emptyList());
 
         assertThatThrownBy(() -> statisticsService.relativeDistribution(1, 1)).isInstanceOf(NoSimulationsException.class);
@@ -157,7 +200,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Empty_Data_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(1L);
+        totalRolls(1L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt())).thenReturn(Lists.emptyList());
 
         final List<RollDistribution> distributions = statisticsService.relativeDistribution(1, 1);
@@ -168,7 +211,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Single_Sum_Simple_Data_100prc_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(1L);
+        totalRolls(1L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt()))
                 .thenReturn(Lists.list(
                         new RollDiceResultItemEntity(1L, null, 1, 1L)
@@ -184,7 +227,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Single_Sum_Simple_Data_1prc_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(100L);
+        totalRolls(100L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt()))
                 .thenReturn(Lists.list(
                         new RollDiceResultItemEntity(1L, null, 1, 1L)
@@ -200,7 +243,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Single_Sum_Simple_Data_5prc_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(100L);
+        totalRolls(100L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt()))
                 .thenReturn(Lists.list(
                         new RollDiceResultItemEntity(1L, null, 1, 5L)
@@ -216,7 +259,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Single_Sum_Multiple_Data_15prc_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(100L);
+        totalRolls(100L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt()))
                 .thenReturn(Lists.list(
                         new RollDiceResultItemEntity(1L, null, 1, 5L),
@@ -234,7 +277,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Multiple_Sum_Multiple_Data_15prc_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(100L);
+        totalRolls(100L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt()))
                 .thenReturn(Lists.list(
                         new RollDiceResultItemEntity(1L, null, 1, 5L),
@@ -259,7 +302,7 @@ public class StatisticsServiceTest {
 
     @Test
     void Relative_Distribution_Multiple_Sum_Multiple_Data_Variation_OK() {
-        when(rollDiceItemRepository.sumAllSimulationRolls()).thenReturn(300L);
+        totalRolls(300L);
         when(rollDiceItemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(anyInt(), anyInt()))
                 .thenReturn(Lists.list(
                         new RollDiceResultItemEntity(1L, null, 3, 1L),
@@ -287,4 +330,90 @@ public class StatisticsServiceTest {
         assertThat(distributions).extracting("sum", Integer.class).element(2).isEqualTo(5);
         assertThat(distributions).extracting("percentage", BigDecimal.class).element(2).isEqualTo(BigDecimal.valueOf(3.67).setScale(2));
     }
+
+    private StatisticsService liveStatisticsService(RollDiceAggregateEntity... aggregates) {
+        final RollDiceAggregateRepository aggregateRepository = mock(RollDiceAggregateRepository.class);
+        when(aggregateRepository.findAllWithResultAmounts()).thenReturn(Lists.list(aggregates));
+        final LiveStatisticsStore store = new LiveStatisticsStore(aggregateRepository, new StatisticsProperties());
+        store.warmUp();
+        return new StatisticsService(aggregateRepository, mock(RollDiceItemRepository.class), mock(RollDiceRepository.class),
+                                     store, mock(TotalRollsCounter.class), new StatisticsProperties());
+    }
+
+    @Test
+    void Relative_Distribution_Compact_Histograms_OK() {
+        final RollDiceItemRepository itemRepository = mock(RollDiceItemRepository.class);
+        final RollDiceRepository repository = mock(RollDiceRepository.class);
+        final TotalRollsCounter counter = mock(TotalRollsCounter.class);
+        when(counter.get()).thenReturn(20L);
+        when(itemRepository.findAllByRollDiceResult_DiceNoAndRollDiceResult_SidesNo(1, 4))
+                .thenReturn(Lists.list(new RollDiceResultItemEntity(1L, null, 1, 4L)));
+        when(repository.findHistograms(1, 4)).thenReturn(Lists.list(Map.of(1, 1L, 4, 15L)));
+        final StatisticsProperties properties = new StatisticsProperties();
+        properties.setLive(false);
+
+        final List<RollDistribution> distributions =
+                new StatisticsService(mock(RollDiceAggregateRepository.class), itemRepository, repository,
+                                      mock(LiveStatisticsStore.class), counter, properties).relativeDistribution(1, 4);
+
+        assertThat(distributions).extracting("sum", Integer.class).containsExactlyInAnyOrder(1, 4);
+        assertThat(distributions).extracting("percentage", BigDecimal.class)
+                                 .containsExactlyInAnyOrder(BigDecimal.valueOf(25).setScale(2), BigDecimal.valueOf(75).setScale(2));
+    }
+
+    @Test
+    void Live_Total_Statistics_OK() {
+        final StatisticsService service = liveStatisticsService(
+                new RollDiceAggregateEntity(2, 5, 1L, 20L, Map.of(2, 20L)),
+                new RollDiceAggregateEntity(1, 4, 3L, 30L, Map.of(1, 10L, 4, 20L)));
+
+        final List<TotalNumberSimulation> result = service.statsticsTotalNumber();
+
+        assertThat(result).hasSize(2);
+        assertThat(result).extracting("diceNo", Integer.class).containsExactly(1, 2);
+        assertThat(result).extracting("sidesNo", Integer.class).containsExactly(4, 5);
+        assertThat(result).extracting("totalSimulations", Long.class).containsExactly(3L, 1L);
+        assertThat(result).extracting("totalRolls", Long.class).containsExactly(30L, 20L);
+    }
+
+    @Test
+    void Live_Relative_Distribution_OK() {
+        final StatisticsService service = liveStatisticsService(
+                new RollDiceAggregateEntity(1, 4, 3L, 100L, Map.of(1, 15L, 2, 4L, 3, 81L)),
+                new RollDiceAggregateEntity(2, 4, 1L, 200L, Map.of(2, 200L)));
+
+        final List<RollDistribution> distributions = service.relativeDistribution(1, 4);
+
+        assertThat(distributions).extracting("sum", Integer.class).containsExactly(1, 2, 3);
+        assertThat(distributions).extracting("percentage", BigDecimal.class)
+                                 .containsExactly(BigDecimal.valueOf(5).setScale(2), BigDecimal.valueOf(1.33), BigDecimal.valueOf(27).setScale(2));
+    }
+
+    @Test
+    void Live_Relative_Distribution_No_Simulations_FAIL() {
+        final StatisticsService service = liveStatisticsService();
+
+        assertThatThrownBy(() -> service.relativeDistribution(1, 4)).isInstanceOf(NoSimulationsException.class);
+    }
+
+    @Test
+    void Scaled_Percentage_Equal_BigDecimal_OK() {
+        final Random random = new Random(5L);
+        final long[][] cases = {{1L, 8L}, {3L, 8L}, {5L, 8L}, {1L, 3L}, {2L, 3L}, {11L, 300L}, {1L, 1L},
+                                {0L, 7L}, {Long.MAX_VALUE, Long.MAX_VALUE}, {Long.MAX_VALUE / 3, Long.MAX_VALUE}};
+        for (long[] c : cases) {
+            assertThat(StatisticsService.scaledPercentage(c[0], c[1])).as("%d / %d", c[0], c[1]).isEqualTo(percentage(c[0], c[1]));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            final long total = 1L + (random.nextBoolean() ? random.nextInt(100_000) : random.nextLong() >>> 1);
+            final long amount = (random.nextLong() >>> 1) % total;
+            assertThat(StatisticsService.scaledPercentage(amount, total)).as("%d / %d", amount, total).isEqualTo(percentage(amount, total));
+        }
+    }
+
+    private static long percentage(long amount, long total) {
+        return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(100))
+                         .divide(BigDecimal.valueOf(total), 2, RoundingMode.HALF_EVEN)
+                         .unscaledValue().longValueExact();
+    }
 }
@@ -0,0 +1,154 @@
+package com.avaloq.dice.app.service.persistence;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.avaloq.dice.app.config.PersistenceProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.model.SimulationResult;
+import com.avaloq.dice.app.service.RollDiceStorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SimulationWriteBehindTest {
+
+    SimpleMeterRegistry meterRegistry;
+    RollDiceStorageService rollDiceStorageService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rollDiceStorageService = mock(RollDiceStorageService.class);
+    }
+
+    private SimulationWriteBehind writeBehind(boolean enabled, int capacity, WriteBehindOverflow overflow) {
+        final PersistenceProperties properties = new PersistenceProperties();
+        properties.setWriteBehind(enabled);
+        properties.setWriteBehindCapacity(capacity);
+        properties.setWriteBehindBatchSize(4);
+        properties.setWriteBehindOverflow(overflow);
+        properties.setWriteBehindBlockTimeout(Duration.ofMillis(10));
+        properties.setWriteBehindRetries(1);
+        properties.setWriteBehindRetryBackoff(Duration.ofMillis(1));
+        return new SimulationWriteBehind(rollDiceStorageService, meterRegistry, properties);
+    }
+
+    private static SimulationResult simulation(int diceNo) {
+        return new SimulationResult(diceNo, 6, Lists.list(new RollDice(diceNo, 1L)));
+    }
+
+    private double simulations(String outcome) {
+        return meterRegistry.get("dice.persistence.simulations").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void Submit_Disabled_FAIL() {
+        assertThat(writeBehind(false, 8, WriteBehindOverflow.BLOCK).submit(simulation(1))).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void Submit_Batched_Flushed_On_Stop_OK() throws InterruptedException {
+        final SimulationWriteBehind writeBehind = writeBehind(true, 16, WriteBehindOverflow.BLOCK);
+        IntStream.rangeClosed(1, 10).forEach(i -> assertThat(writeBehind.submit(simulation(i))).isTrue());
+        assertThat(meterRegistry.get("dice.persistence.queue.depth").gauge().value()).isEqualTo(10.0);
+        assertThat(writeBehind.lagNanos()).isPositive();
+
+        writeBehind.start();
+        writeBehind.stop();
+
+        final ArgumentCaptor<List<SimulationResult>> batches = ArgumentCaptor.forClass(List.class);
+        verify(rollDiceStorageService, atLeastOnce()).saveAll(batches.capture());
+        assertThat(batches.getAllValues()).allSatisfy(b -> assertThat(b).hasSizeLessThanOrEqualTo(4));
+        assertThat(batches.getAllValues().stream().flatMap(List::stream).map(SimulationResult::getDiceNo).collect(Collectors.toList()))
+                .containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(simulations("written")).isEqualTo(10.0);
+        assertThat(writeBehind.depth()).isZero();
+        assertThat(writeBehind.lagNanos()).isZero();
+        assertThat(writeBehind.submit(simulation(11))).isFalse();
+    }
+
+    @Test
+    void Submit_Full_Shed_OK() {
+        final SimulationWriteBehind writeBehind = writeBehind(true, 2, WriteBehindOverflow.SHED);
+
+        IntStream.rangeClosed(1, 3).forEach(i -> assertThat(writeBehind.submit(simulation(i))).isTrue());
+        writeBehind.drain();
+
+        verify(rollDiceStorageService).saveAll(Lists.list(simulation(1), simulation(2)));
+        assertThat(simulations("shed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void Submit_Full_Sync_OK() {
+        final SimulationWriteBehind writeBehind = writeBehind(true, 2, WriteBehindOverflow.SYNC);
+
+        assertThat(writeBehind.submit(simulation(1))).isTrue();
+        assertThat(writeBehind.submit(simulation(2))).isTrue();
+        assertThat(writeBehind.submit(simulation(3))).isFalse();
+
+        assertThat(simulations("sync")).isEqualTo(1.0);
+        verify(rollDiceStorageService, never()).saveAll(anyList());
+    }
+
+    @Test
+    void Submit_Full_Block_Timeout_Sync_OK() {
+        final SimulationWriteBehind writeBehind = writeBehind(true, 1, WriteBehindOverflow.BLOCK);
+
+        assertThat(writeBehind.submit(simulation(1))).isTrue();
+        assertThat(writeBehind.submit(simulation(2))).isFalse();
+
+        assertThat(simulations("sync")).isEqualTo(1.0);
+    }
+
+    @Test
+    void Failed_Batch_Stored_One_By_One_OK() {
+        doAnswer(invocation -> {
+            if (invocation.<List<SimulationResult>>getArgument(0).size() > 1) {
+                throw new IllegalStateException("Batch too large");
+            }
+            return null;
+        }).when(rollDiceStorageService).saveAll(anyList());
+        final SimulationWriteBehind writeBehind = writeBehind(true, 8, WriteBehindOverflow.SYNC);
+
+        IntStream.rangeClosed(1, 3).forEach(i -> writeBehind.submit(simulation(i)));
+        writeBehind.drain();
+
+        verify(rollDiceStorageService, times(2)).saveAll(Lists.list(simulation(1), simulation(2), simulation(3)));
+        verify(rollDiceStorageService).saveAll(Lists.list(simulation(2)));
+        assertThat(simulations("written")).isEqualTo(3.0);
+        assertThat(simulations("failed")).isZero();
+    }
+
+    @Test
+    void Writer_Survives_Error_OK() throws InterruptedException {
+        doThrow(new AssertionError("Writer failure")).doNothing().when(rollDiceStorageService).saveAll(anyList());
+        final SimulationWriteBehind writeBehind = writeBehind(true, 8, WriteBehindOverflow.SYNC);
+        writeBehind.start();
+
+        assertThat(writeBehind.submit(simulation(1))).isTrue();
+        while (simulations("failed") == 0.0) {
+            Thread.sleep(1L);
+        }
+        assertThat(writeBehind.submit(simulation(2))).isTrue();
+        writeBehind.stop();
+
+        verify(rollDiceStorageService).saveAll(Lists.list(simulation(2)));
+        assertThat(simulations("written")).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,55 @@
+package com.avaloq.dice.app.service.random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class BoundedRandomsTest {
+
+    private final DiceRandom random = new Xoshiro256StarStar(42L);
+
+    @Test
+    public void Bounded_Value_Range_OK() {
+        for (int bound : new int[] {1, 4, 6, 100, Integer.MAX_VALUE}) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(BoundedRandoms.nextInt(random, bound)).isBetween(0, bound - 1);
+            }
+        }
+    }
+
+    @Test
+    public void Bounded_Value_Uniform_OK() {
+        final int draws = 600_000;
+        final long[] counts = new long[6];
+        for (int i = 0; i < draws; i++) {
+            counts[BoundedRandoms.nextInt(random, 6)]++;
+        }
+
+        for (long count : counts) {
+            assertThat((double) count / draws).isCloseTo(1.0 / 6, within(0.005));
+        }
+    }
+
+    @Test
+    public void Bounded_Long_Value_Range_OK() {
+        for (long bound : new long[] {1L, 6L, 1L << 40, 4_738_381_338_321_616_896L, Long.MAX_VALUE}) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(BoundedRandoms.nextLong(random, bound)).isBetween(0L, bound - 1);
+            }
+        }
+    }
+
+    @Test
+    public void Bounded_Long_Value_Uniform_OK() {
+        final int draws = 600_000;
+        final long[] counts = new long[6];
+        for (int i = 0; i < draws; i++) {
+            counts[(int) BoundedRandoms.nextLong(random, 6L)]++;
+        }
+
+        for (long count : counts) {
+            assertThat((double) count / draws).isCloseTo(1.0 / 6, within(0.005));
+        }
+    }
+}
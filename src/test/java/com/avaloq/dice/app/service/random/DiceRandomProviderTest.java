@@ -0,0 +1,43 @@
+package com.avaloq.dice.app.service.random;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiceRandomProviderTest {
+
+    @ParameterizedTest
+    @EnumSource(DiceRandomProviderType.class)
+    public void Seeded_Generator_Reproducible_OK(DiceRandomProviderType type) {
+        DiceRandomProvider provider = type.create();
+        DiceRandom first = provider.create(42L);
+        DiceRandom second = provider.create(42L);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(first.nextLong()).isEqualTo(second.nextLong());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DiceRandomProviderType.class)
+    public void Bounded_Value_OK(DiceRandomProviderType type) {
+        DiceRandom random = type.create().current();
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(random.nextInt(6)).isBetween(0, 5);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DiceRandomProviderType.class, names = {"SPLITTABLE", "XOSHIRO256"})
+    public void Current_Generator_Thread_Confined_OK(DiceRandomProviderType type) throws Exception {
+        DiceRandomProvider provider = type.create();
+        DiceRandom otherThreadRandom = CompletableFuture.supplyAsync(provider::current).get();
+
+        assertThat(provider.current()).isSameAs(provider.current());
+        assertThat(provider.current()).isNotSameAs(otherThreadRandom);
+    }
+}
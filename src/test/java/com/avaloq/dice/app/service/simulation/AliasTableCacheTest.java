@@ -0,0 +1,61 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.random.Xoshiro256StarStar;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AliasTableCacheTest {
+
+    private final SimulationProperties properties = new SimulationProperties();
+    private final ExactDistributionService exactDistributionService = new ExactDistributionService(properties);
+
+    @Test
+    public void Alias_Sampler_Frequencies_OK() {
+        final int rolls = 1_000_000;
+        final ExactDistribution distribution = exactDistributionService.exactDistribution(3, 6);
+        final AliasDiceSampler sampler = new AliasDiceSampler(distribution);
+        final DiceRandom random = new Xoshiro256StarStar(42L);
+        final long[] counts = new long[19];
+        for (int i = 0; i < rolls; i++) {
+            counts[sampler.sample(random)]++;
+        }
+
+        assertThat(counts[0] + counts[1] + counts[2]).isZero();
+        for (int sum = 3; sum <= 18; sum++) {
+            assertThat((double) counts[sum] / rolls).isCloseTo(distribution.probability(sum), within(2e-3));
+        }
+    }
+
+    @Test
+    public void Alias_Applicable_OK() {
+        AliasTableCache cache = new AliasTableCache(exactDistributionService, properties);
+
+        assertThat(cache.isApplicable(3, 6, 1_000_000)).isFalse();
+        assertThat(cache.isApplicable(100, 6, 1_000_000)).isTrue();
+        assertThat(cache.isApplicable(100, 6, 100)).isFalse();
+    }
+
+    @Test
+    public void Alias_Table_Cached_OK() {
+        AliasTableCache cache = new AliasTableCache(exactDistributionService, properties);
+
+        assertThat(cache.sampler(100, 6)).isSameAs(cache.sampler(100, 6));
+    }
+
+    @Test
+    public void Alias_Table_Evicted_OK() {
+        properties.setAliasCacheMaxColumns(1000L);
+        AliasTableCache cache = new AliasTableCache(exactDistributionService, properties);
+
+        final AliasDiceSampler first = cache.sampler(100, 6);
+        cache.sampler(100, 7);
+
+        assertThat(cache.sampler(100, 6)).isNotSameAs(first);
+    }
+}
@@ -0,0 +1,41 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.model.ExactDistribution;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import com.avaloq.dice.app.service.random.Xoshiro256StarStar;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class MultinomialRollSimulatorTest {
+
+    private final SimulationProperties properties = new SimulationProperties();
+    private final ExactDistributionService exactDistributionService = new ExactDistributionService(properties);
+    private final MultinomialRollSimulator simulator = new MultinomialRollSimulator(exactDistributionService, properties);
+
+    @Test
+    public void Multinomial_Applicable_OK() {
+        assertThat(simulator.isApplicable(3, 1000)).isFalse();
+        assertThat(simulator.isApplicable(100, Integer.MAX_VALUE)).isTrue();
+    }
+
+    @Test
+    public void Multinomial_Total_Rolls_OK() {
+        final RollHistogram histogram = simulator.simulate(10, 6, 2_000_000_000L, new Xoshiro256StarStar(1L));
+
+        assertThat(histogram.totalRolls()).isEqualTo(2_000_000_000L);
+    }
+
+    @Test
+    public void Multinomial_Relative_Frequencies_OK() {
+        final long rolls = 100_000_000L;
+        final RollHistogram histogram = simulator.simulate(3, 6, rolls, new Xoshiro256StarStar(1L));
+        final ExactDistribution distribution = exactDistributionService.exactDistribution(3, 6);
+
+        for (int sum = 3; sum <= 18; sum++) {
+            assertThat((double) histogram.getAmount(sum) / rolls).isCloseTo(distribution.probability(sum), within(1e-3));
+        }
+    }
+}
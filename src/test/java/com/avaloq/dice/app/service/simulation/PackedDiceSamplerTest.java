@@ -0,0 +1,54 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.service.random.DiceRandom;
+import com.avaloq.dice.app.service.random.Xoshiro256StarStar;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class PackedDiceSamplerTest {
+
+    private final DiceRandom random = new Xoshiro256StarStar(42L);
+
+    @Test
+    public void Packed_Supported_OK() {
+        assertThat(PackedDiceSampler.supports(3, 6)).isTrue();
+        assertThat(PackedDiceSampler.supports(1, 6)).isFalse();
+        assertThat(PackedDiceSampler.supports(3, PackedDiceSampler.MAX_TABLE_SIZE + 1)).isFalse();
+    }
+
+    @Test
+    public void Packed_Dice_Per_Draw_OK() {
+        assertThat(new PackedDiceSampler(3, 6).getDicePerDraw()).isEqualTo(3);
+        assertThat(new PackedDiceSampler(100, 6).getDicePerDraw()).isEqualTo(24);
+        assertThat(new PackedDiceSampler(100, 4).getDicePerDraw()).isEqualTo(31);
+    }
+
+    @Test
+    public void Packed_Sum_Range_OK() {
+        for (int[] dice : new int[][] {{3, 6}, {10, 4}, {25, 6}, {2, 4096}}) {
+            PackedDiceSampler sampler = new PackedDiceSampler(dice[0], dice[1]);
+            for (int i = 0; i < 10_000; i++) {
+                assertThat(sampler.sample(random)).isBetween(dice[0], dice[0] * dice[1]);
+            }
+        }
+    }
+
+    @Test
+    public void Packed_Sum_Distribution_OK() {
+        final int rolls = 200_000;
+        PackedDiceSampler sampler = new PackedDiceSampler(25, 6);
+        double sum = 0;
+        double squares = 0;
+        for (int i = 0; i < rolls; i++) {
+            final int value = sampler.sample(random);
+            sum += value;
+            squares += (double) value * value;
+        }
+        final double mean = sum / rolls;
+
+        assertThat(mean).isCloseTo(25 * 3.5, within(0.1));
+        assertThat(squares / rolls - mean * mean).isCloseTo(25 * 35.0 / 12, within(1.0));
+    }
+}
@@ -0,0 +1,54 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.util.List;
+
+import com.avaloq.dice.app.model.RollDice;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RollHistogramTest {
+
+    @Test
+    public void Histogram_Range_OK() {
+        RollHistogram histogram = new RollHistogram(3, 6);
+
+        assertThat(histogram.getMinSum()).isEqualTo(3);
+        assertThat(histogram.getMaxSum()).isEqualTo(18);
+    }
+
+    @Test
+    public void Histogram_Count_OK() {
+        RollHistogram histogram = new RollHistogram(3, 6);
+        histogram.add(3);
+        histogram.add(18);
+        histogram.add(18);
+        histogram.add(10, 5L);
+
+        final List<RollDice> result = histogram.toRollDice();
+
+        assertThat(result).containsExactly(new RollDice(3, 1L), new RollDice(10, 5L), new RollDice(18, 2L));
+        assertThat(histogram.totalRolls()).isEqualTo(8L);
+    }
+
+    @Test
+    public void Histogram_Merge_OK() {
+        RollHistogram histogram = new RollHistogram(2, 4);
+        RollHistogram other = new RollHistogram(2, 4);
+        histogram.add(2);
+        other.add(2);
+        other.add(8);
+
+        histogram.merge(other);
+
+        assertThat(histogram.getAmount(2)).isEqualTo(2L);
+        assertThat(histogram.getAmount(8)).isEqualTo(1L);
+    }
+
+    @Test
+    public void Histogram_Too_Wide_FAIL() {
+        assertThat(RollHistogram.fits(1, Integer.MAX_VALUE)).isFalse();
+        assertThatThrownBy(() -> new RollHistogram(1, Integer.MAX_VALUE)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,162 @@
+package com.avaloq.dice.app.service.simulation;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.exception.SimulationOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SimulationAdmissionTest {
+
+    private static final long BUDGET = Duration.ofSeconds(10).toNanos();
+
+    SimpleMeterRegistry meterRegistry;
+    SimulationStrategySelector simulationStrategySelector;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        simulationStrategySelector = mock(SimulationStrategySelector.class);
+    }
+
+    private SimulationAdmission admission(boolean enabled, int queueCapacity, Duration maxWait) {
+        final SimulationProperties properties = new SimulationProperties();
+        properties.setAdmissionEnabled(enabled);
+        properties.setAdmissionBudget(Duration.ofNanos(BUDGET));
+        properties.setAdmissionMaxCost(Duration.ofNanos(BUDGET * 2));
+        properties.setAdmissionQueueCapacity(queueCapacity);
+        properties.setAdmissionMaxWait(maxWait);
+        properties.setParallelism(2);
+        return new SimulationAdmission(simulationStrategySelector, meterRegistry, properties);
+    }
+
+    private double simulations(String outcome) {
+        return meterRegistry.get("dice.simulation.admission").tag("outcome", outcome).counter().count();
+    }
+
+    /**
+     * Keeps the whole budget in use until released
+     */
+    private CountDownLatch holdBudget(SimulationAdmission admission) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture.runAsync(() -> admission.admit(BUDGET, () -> {
+            started.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    @Test
+    void Cost_From_Selected_Kernel_OK() {
+        when(simulationStrategySelector.estimateWork(3, 6, 1000, true)).thenReturn(1234.2);
+
+        assertThat(admission(true, 1, Duration.ZERO).cost(3, 6, 1000, true)).isEqualTo(1235L);
+    }
+
+    @Test
+    void Admit_Within_Budget_OK() {
+        final SimulationAdmission admission = admission(true, 1, Duration.ZERO);
+
+        assertThat(admission.admit(BUDGET / 2, () -> admission.inProgress())).isEqualTo(BUDGET / 2);
+        assertThat(admission.inProgress()).isZero();
+        assertThat(simulations("admitted")).isEqualTo(1.0);
+        assertThat(simulations("queued")).isZero();
+        assertThat(simulations("shed")).isZero();
+    }
+
+    @Test
+    void Admit_Over_Budget_Alone_OK() {
+        final SimulationAdmission admission = admission(true, 1, Duration.ZERO);
+
+        assertThat(admission.admit(BUDGET * 2, () -> admission.inProgress())).isEqualTo(BUDGET);
+        assertThat(admission.inProgress()).isZero();
+    }
+
+    @Test
+    void Admit_Over_Max_Cost_FAIL() {
+        final SimulationAdmission admission = admission(true, 1, Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> admission.admit(BUDGET * 2 + 1, () -> "simulated"))
+                .isInstanceOfSatisfying(SimulationOverloadedException.class, e -> {
+                    assertThat(e.isQueueFull()).isTrue();
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(1L);
+                });
+        assertThat(simulations("shed")).isEqualTo(1.0);
+        assertThat(simulations("admitted")).isZero();
+    }
+
+    @Test
+    void Admit_Disabled_OK() {
+        final SimulationAdmission admission = admission(false, 0, Duration.ZERO);
+
+        assertThat(admission.admit(BUDGET * 2, () -> "simulated")).isEqualTo("simulated");
+        assertThat(simulations("admitted")).isZero();
+    }
+
+    @Test
+    void Admit_Queued_Until_Released_OK() throws Exception {
+        final SimulationAdmission admission = admission(true, 1, Duration.ofSeconds(10));
+        final CountDownLatch release = holdBudget(admission);
+
+        final CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> admission.admit(1L, () -> "simulated"));
+        while (admission.waiting() == 0) {
+            Thread.sleep(1L);
+        }
+        assertThat(queued).isNotDone();
+
+        release.countDown();
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo("simulated");
+        assertThat(simulations("admitted")).isEqualTo(2.0);
+        assertThat(simulations("queued")).isEqualTo(1.0);
+        assertThat(admission.waiting()).isZero();
+    }
+
+    @Test
+    void Admit_Queue_Full_FAIL() throws InterruptedException {
+        final SimulationAdmission admission = admission(true, 0, Duration.ofSeconds(10));
+        final CountDownLatch release = holdBudget(admission);
+
+        try {
+            assertThatThrownBy(() -> admission.admit(1L, () -> "simulated"))
+                    .isInstanceOfSatisfying(SimulationOverloadedException.class, e -> {
+                        assertThat(e.isQueueFull()).isTrue();
+                        assertThat(e.getRetryAfterSeconds()).isEqualTo(5L);
+                    });
+            assertThat(simulations("shed")).isEqualTo(1.0);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void Admit_Wait_Timeout_FAIL() throws InterruptedException {
+        final SimulationAdmission admission = admission(true, 1, Duration.ofMillis(50));
+        final CountDownLatch release = holdBudget(admission);
+
+        try {
+            assertThatThrownBy(() -> admission.admit(1L, () -> "simulated"))
+                    .isInstanceOfSatisfying(SimulationOverloadedException.class, e -> assertThat(e.isQueueFull()).isFalse());
+            assertThat(simulations("queued")).isEqualTo(1.0);
+            assertThat(simulations("shed")).isEqualTo(1.0);
+            assertThat(admission.waiting()).isZero();
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.avaloq.dice.app.service.simulation;
+
+import com.avaloq.dice.app.config.SimulationProperties;
+import com.avaloq.dice.app.service.ExactDistributionService;
+import com.avaloq.dice.app.service.RollDiceService;
+import com.avaloq.dice.app.service.random.ThreadLocalDiceRandomProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimulationStrategySelectorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SimulationStrategySelector selector(SimulationProperties properties) {
+        final ExactDistributionService exactDistributionService = new ExactDistributionService(properties);
+        final ThreadLocalDiceRandomProvider randomProvider = new ThreadLocalDiceRandomProvider();
+        final MultinomialRollSimulator multinomialRollSimulator = new MultinomialRollSimulator(exactDistributionService, properties);
+        return new SimulationStrategySelector(
+                new SimulationCostModel(new RollDiceService(randomProvider), multinomialRollSimulator, properties),
+                new ParallelRollSimulator(properties, randomProvider), multinomialRollSimulator,
+                new AliasTableCache(exactDistributionService, properties), meterRegistry, properties);
+    }
+
+    @Test
+    public void Select_Packed_Few_Dice_OK() {
+        final SimulationPlan plan = selector(new SimulationProperties()).select(3, 6, 1_000, false);
+
+        assertThat(plan.getStrategy()).isEqualTo(SimulationStrategy.PACKED);
+        assertThat(plan.isParallel()).isFalse();
+    }
+
+    @Test
+    public void Select_Per_Die_Single_Dice_OK() {
+        assertThat(selector(new SimulationProperties()).select(1, 6, 1_000, false).getStrategy())
+                .isEqualTo(SimulationStrategy.PER_DIE);
+    }
+
+    @Test
+    public void Select_Alias_Many_Dice_OK() {
+        assertThat(selector(new SimulationProperties()).select(100, 6, 100_000, true).getStrategy())
+                .isEqualTo(SimulationStrategy.ALIAS);
+    }
+
+    @Test
+    public void Select_Multinomial_Huge_Rolls_OK() {
+        final SimulationPlan plan = selector(new SimulationProperties()).select(3, 6, Integer.MAX_VALUE, true);
+
+        assertThat(plan.getStrategy()).isEqualTo(SimulationStrategy.MULTINOMIAL);
+        assertThat(plan.isParallel()).isFalse();
+    }
+
+    @Test
+    public void Select_Below_Threshold_Never_Multinomial_OK() {
+        final SimulationProperties properties = new SimulationProperties();
+        properties.setMultinomialThreshold(Long.MAX_VALUE);
+
+        assertThat(selector(properties).select(3, 6, Integer.MAX_VALUE, true).getStrategy())
+                .isNotEqualTo(SimulationStrategy.MULTINOMIAL);
+    }
+
+    @Test
+    public void Select_Parallel_OK() {
+        final SimulationProperties properties = new SimulationProperties();
+        properties.setParallelism(4);
+        properties.setMultinomialThreshold(Long.MAX_VALUE);
+
+        final SimulationPlan plan = selector(properties).select(10, 6, 10_000_000, true);
+
+        assertThat(plan.isParallel()).isTrue();
+        assertThat(plan.getEstimatedNanos()).isPositive();
+    }
+
+    @Test
+    public void Select_Seeded_Uses_Reference_Costs_OK() {
+        final SimulationProperties properties = new SimulationProperties();
+        final SimulationPlan plan = selector(properties).select(5, 8, 100_000, true);
+
+        assertThat(plan.getEstimatedNanos())
+                .isEqualTo(SimulationCosts.REFERENCE.estimate(plan.getStrategy(), 5, 8, 100_000));
+    }
+
+    @Test
+    public void Select_Metrics_OK() {
+        final SimulationStrategySelector selector = selector(new SimulationProperties());
+        final SimulationPlan plan = selector.select(3, 6, 1_000, false);
+        selector.record(plan, 1_000L);
+
+        assertThat(meterRegistry.get("dice.simulation.strategy").tag("strategy", "PACKED").tag("parallel", "false").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("dice.simulation.duration").tag("strategy", "PACKED").tag("parallel", "false").timer().count()).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,197 @@
+package com.avaloq.dice.app.service.statistics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.avaloq.dice.app.config.StatisticsProperties;
+import com.avaloq.dice.app.model.RollDice;
+import com.avaloq.dice.app.repository.RollDiceAggregateRepository;
+import com.avaloq.dice.app.repository.model.RollDiceAggregateEntity;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LiveStatisticsStoreTest {
+
+    RollDiceAggregateRepository rollDiceAggregateRepository;
+
+    @BeforeEach
+    void setUp() {
+        rollDiceAggregateRepository = mock(RollDiceAggregateRepository.class);
+    }
+
+    private LiveStatisticsStore store(boolean live) {
+        final StatisticsProperties properties = new StatisticsProperties();
+        properties.setLive(live);
+        return new LiveStatisticsStore(rollDiceAggregateRepository, properties);
+    }
+
+    @Test
+    void Warm_Up_From_Aggregates_OK() {
+        when(rollDiceAggregateRepository.findAllWithResultAmounts()).thenReturn(Lists.list(
+                new RollDiceAggregateEntity(3, 6, 2L, 10L, Map.of(3, 4L, 18, 6L))));
+        final LiveStatisticsStore store = store(true);
+
+        assertThat(store.isWarm()).isFalse();
+        store.warmUp();
+
+        assertThat(store.isWarm()).isTrue();
+        assertThat(store.snapshot().getTotals()).containsExactly(new PairTotals(3, 6, 2L, 10L));
+        assertThat(store.snapshot().getTotalRolls()).isEqualTo(10L);
+        assertThat(store.amounts(3, 6)).containsExactly(Map.entry(3, 4L), Map.entry(18, 6L));
+    }
+
+    @Test
+    void Disabled_Store_Not_Warm_OK() {
+        final LiveStatisticsStore store = store(false);
+        store.warmUp();
+        store.add(1, 6, Lists.list(new RollDice(1, 1L)));
+
+        assertThat(store.isWarm()).isFalse();
+        assertThat(store.snapshot().getTotals()).isEmpty();
+        verify(rollDiceAggregateRepository, never()).findAllWithResultAmounts();
+    }
+
+    @Test
+    void Add_Simulations_OK() {
+        final LiveStatisticsStore store = store(true);
+        store.warmUp();
+
+        store.add(2, 4, Lists.list(new RollDice(2, 1L), new RollDice(8, 3L)));
+        store.add(2, 4, Lists.list(new RollDice(2, 5L)));
+        store.add(1, 6, Lists.list(new RollDice(6, 2L)));
+
+        assertThat(store.snapshot().getTotals()).containsExactly(new PairTotals(1, 6, 1L, 2L), new PairTotals(2, 4, 2L, 9L));
+        assertThat(store.snapshot().getTotalRolls()).isEqualTo(11L);
+        assertThat(store.amounts(2, 4)).containsExactly(Map.entry(2, 6L), Map.entry(8, 3L));
+        assertThat(store.amounts(5, 5)).isEmpty();
+    }
+
+    @Test
+    void Add_After_Commit_OK() {
+        final LiveStatisticsStore store = store(true);
+        store.warmUp();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.add(2, 4, Lists.list(new RollDice(2, 1L)));
+            assertThat(store.snapshot().getTotals()).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(store.snapshot().getTotals()).containsExactly(new PairTotals(2, 4, 1L, 1L));
+    }
+
+    @Test
+    void Add_Before_Warm_Up_Ignored_OK() {
+        when(rollDiceAggregateRepository.findAllWithResultAmounts()).thenReturn(Lists.list(
+                new RollDiceAggregateEntity(2, 4, 1L, 1L, Map.of(2, 1L))));
+        final LiveStatisticsStore store = store(true);
+
+        store.add(2, 4, Lists.list(new RollDice(2, 1L)));
+        store.warmUp();
+
+        assertThat(store.snapshot().getTotals()).containsExactly(new PairTotals(2, 4, 1L, 1L));
+    }
+
+    @Test
+    void Commit_During_Warm_Up_Added_OK() throws Exception {
+        final LiveStatisticsStore store = store(true);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicReference<Thread> committing = new AtomicReference<>();
+        final AtomicReference<Future<?>> commit = new AtomicReference<>();
+        when(rollDiceAggregateRepository.findAllWithResultAmounts()).thenAnswer(invocation -> {
+            commit.set(executor.submit(() -> {
+                committing.set(Thread.currentThread());
+                commit(store, 2, 4, Lists.list(new RollDice(2, 1L)));
+            }));
+            // aggregates are read before the simulation commits
+            while (null == committing.get() || Thread.State.WAITING != committing.get().getState()) {
+                Thread.sleep(1L);
+            }
+            return Lists.list(new RollDiceAggregateEntity(2, 4, 1L, 1L, Map.of(2, 1L)));
+        });
+
+        try {
+            store.warmUp();
+            commit.get().get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(store.snapshot().getTotals()).containsExactly(new PairTotals(2, 4, 2L, 2L));
+        assertThat(store.amounts(2, 4)).containsExactly(Map.entry(2, 2L));
+    }
+
+    /**
+     * Adds simulation in a transaction committed on the calling thread
+     */
+    private static void commit(LiveStatisticsStore store, int diceNo, int sidesNo, List<RollDice> result) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.add(diceNo, sidesNo, result);
+            final List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void Wide_Sum_Range_OK() {
+        final LiveStatisticsStore store = store(true);
+        store.warmUp();
+
+        store.add(1000, 1000, Lists.list(new RollDice(1000, 1L), new RollDice(500_000, 2L)));
+
+        assertThat(store.amounts(1000, 1000)).containsExactly(Map.entry(1000, 1L), Map.entry(500_000, 2L));
+    }
+
+    @Test
+    void Snapshot_Reused_Until_Changed_OK() {
+        final LiveStatisticsStore store = store(true);
+        store.warmUp();
+        store.add(2, 4, Lists.list(new RollDice(2, 1L)));
+
+        final LiveStatisticsSnapshot snapshot = store.snapshot();
+        assertThat(store.snapshot()).isSameAs(snapshot);
+
+        store.add(2, 4, Lists.list(new RollDice(2, 1L)));
+        assertThat(store.snapshot()).isNotSameAs(snapshot);
+        assertThat(snapshot.getTotals()).containsExactly(new PairTotals(2, 4, 1L, 1L));
+    }
+
+    @Test
+    void Concurrent_Adds_OK() throws InterruptedException {
+        final LiveStatisticsStore store = store(true);
+        store.warmUp();
+        final List<RollDice> result = Lists.list(new RollDice(3, 1L), new RollDice(10, 2L));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10_000; i++) {
+            executor.execute(() -> store.add(3, 6, result));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(store.snapshot().getTotals()).containsExactly(new PairTotals(3, 6, 10_000L, 30_000L));
+        assertThat(store.amounts(3, 6)).containsExactly(Map.entry(3, 10_000L), Map.entry(10, 20_000L));
+    }
+}